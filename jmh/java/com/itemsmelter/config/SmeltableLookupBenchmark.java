@@ -0,0 +1,94 @@
+package com.itemsmelter.config;
+
+import com.itemsmelter.models.DurabilityRange;
+import com.itemsmelter.models.FurnaceKind;
+import com.itemsmelter.models.RollSource;
+import com.itemsmelter.models.SmeltableItem;
+import org.bukkit.Material;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "Is this material smeltable" as every click, drag, burn and smelt handler
+ * asks it: the HashMap ConfigManager used to keep against the ordinal table
+ * of the snapshot. Add {@code -prof gc} to see that neither path allocates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SmeltableLookupBenchmark {
+
+    private static final int PROBES = 4096;
+    private static final String[] SMELTABLE_SUFFIXES = {
+            "_HELMET", "_CHESTPLATE", "_LEGGINGS", "_BOOTS",
+            "_SWORD", "_PICKAXE", "_AXE", "_SHOVEL", "_HOE", "MINECART"
+    };
+
+    private Map<Material, SmeltableItem> smeltableItems;
+    private RecipeSnapshot snapshot;
+    private Material[] probes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        smeltableItems = new HashMap<>();
+        for (Material material : Material.values()) {
+            if (isSmeltable(material)) {
+                smeltableItems.put(material, item(material));
+            }
+        }
+        snapshot = new RecipeSnapshot(null, smeltableItems, Collections.emptyMap(), null, null,
+                new RollSource.Fast(), 0);
+
+        // Players click on every kind of item, most of them not smeltable
+        Material[] materials = Material.values();
+        SplittableRandom random = new SplittableRandom(3L);
+        probes = new Material[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = materials[random.nextInt(materials.length)];
+        }
+    }
+
+    @Benchmark
+    public SmeltableItem hashMap() {
+        return smeltableItems.get(probes[next++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public SmeltableItem ordinalTable() {
+        return snapshot.getSmeltableItem(probes[next++ & (PROBES - 1)]);
+    }
+
+    private static boolean isSmeltable(Material material) {
+        for (String suffix : SMELTABLE_SUFFIXES) {
+            if (material.name().endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static SmeltableItem item(Material material) {
+        Map<Integer, DurabilityRange> ranges = new HashMap<>();
+        ranges.put(100, new DurabilityRange(1, 1));
+        return new SmeltableItem(material.name().toLowerCase(), material, true, FurnaceKind.BLAST_FURNACE,
+                true, false, Material.IRON_INGOT, 1, 2.0, 1, ranges);
+    }
+}
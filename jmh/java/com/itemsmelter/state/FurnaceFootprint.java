@@ -0,0 +1,84 @@
+package com.itemsmelter.state;
+
+import com.itemsmelter.managers.SmeltingManager.SmeltingProcess;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.lang.ref.Reference;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Heap retained by the old Location-keyed maps and by the state store for the
+ * same furnaces, measured as the used heap before and after filling each one.
+ * Run it on its own JVM with a fixed heap, e.g. {@code -Xms2g -Xmx2g}.
+ */
+public final class FurnaceFootprint {
+
+    private FurnaceFootprint() {
+    }
+
+    public static void main(String[] args) {
+        World world = FurnaceLookupBenchmark.fakeWorld();
+        for (FurnaceLookupBenchmark.Layout layout : FurnaceLookupBenchmark.Layout.values()) {
+            for (int count : new int[] {10_000, 100_000}) {
+                FurnaceLookupBenchmark.Furnaces furnaces = FurnaceLookupBenchmark.Furnaces.place(count, layout, 7L);
+                long maps = locationMaps(world, furnaces);
+                long store = stateStore(world, furnaces);
+                System.out.printf("%s %,d furnaces: location maps %,d bytes (%d/furnace), state store %,d bytes (%d/furnace)%n",
+                        layout, count, maps, maps / count, store, store / count);
+            }
+        }
+    }
+
+    private static long locationMaps(World world, FurnaceLookupBenchmark.Furnaces furnaces) {
+        long before = usedHeap();
+        Map<Location, Long> lastSmelt = new HashMap<>();
+        Set<Location> processingFailure = new HashSet<>();
+        Set<Location> blockedFurnaces = new HashSet<>();
+        Map<Location, SmeltingProcess> activeProcesses = new HashMap<>();
+        furnaces.fillMaps(world, lastSmelt, processingFailure, blockedFurnaces, activeProcesses);
+        long retained = usedHeap() - before;
+
+        Reference.reachabilityFence(lastSmelt);
+        Reference.reachabilityFence(processingFailure);
+        Reference.reachabilityFence(blockedFurnaces);
+        Reference.reachabilityFence(activeProcesses);
+        return retained;
+    }
+
+    private static long stateStore(World world, FurnaceLookupBenchmark.Furnaces furnaces) {
+        long before = usedHeap();
+        FurnaceStateStore store = new FurnaceStateStore();
+        furnaces.fillStore(world, store);
+        long retained = usedHeap() - before;
+
+        Reference.reachabilityFence(store);
+        return retained;
+    }
+
+    /**
+     * Used heap after full collections. The first collection after a measured
+     * structure went out of scope can still find it through a stale slot of
+     * the finished frame, so the reading is taken from a second call.
+     */
+    private static long usedHeap() {
+        collect();
+        return collect();
+    }
+
+    private static long collect() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,209 @@
+package com.itemsmelter.state;
+
+import com.itemsmelter.managers.SmeltingManager.SmeltingProcess;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the lookups a furnace smelt event makes: the old Location-keyed
+ * maps against the packed-key state store. Run {@link FurnaceFootprint} for
+ * the heap side of the comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FurnaceLookupBenchmark {
+
+    static final long TICK = 10_000L;
+    private static final int PROBES = 4096;
+
+    @Param({"10000", "100000"})
+    public int furnaces;
+
+    @Param({"SCATTERED", "CLUSTERED"})
+    public Layout layout;
+
+    private World world;
+    private int[] probeX;
+    private int[] probeY;
+    private int[] probeZ;
+    private int next;
+
+    // The maps FurnaceListener and SmeltingManager used to keep
+    private Map<Location, Long> lastSmelt;
+    private Set<Location> processingFailure;
+    private Set<Location> blockedFurnaces;
+    private Map<Location, SmeltingProcess> activeProcesses;
+
+    private FurnaceStateStore store;
+
+    @Setup
+    public void setUp() {
+        world = fakeWorld();
+        Furnaces tracked = Furnaces.place(furnaces, layout, 7L);
+
+        lastSmelt = new HashMap<>();
+        processingFailure = new HashSet<>();
+        blockedFurnaces = new HashSet<>();
+        activeProcesses = new HashMap<>();
+        tracked.fillMaps(world, lastSmelt, processingFailure, blockedFurnaces, activeProcesses);
+
+        store = new FurnaceStateStore();
+        tracked.fillStore(world, store);
+
+        SplittableRandom random = new SplittableRandom(11L);
+        probeX = new int[PROBES];
+        probeY = new int[PROBES];
+        probeZ = new int[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            int furnace = random.nextInt(furnaces);
+            probeX[i] = tracked.x[furnace];
+            probeY[i] = tracked.y[furnace];
+            probeZ[i] = tracked.z[furnace];
+        }
+    }
+
+    @Benchmark
+    public void locationMaps(Blackhole blackhole) {
+        int i = next++ & (PROBES - 1);
+        // What event.getBlock().getLocation() handed out on every event
+        Location location = new Location(world, probeX[i], probeY[i], probeZ[i]);
+        blackhole.consume(processingFailure.contains(location) || blockedFurnaces.contains(location));
+        blackhole.consume(lastSmelt.get(location));
+        blackhole.consume(activeProcesses.get(location));
+    }
+
+    @Benchmark
+    public void stateStore(Blackhole blackhole) {
+        int i = next++ & (PROBES - 1);
+        FurnaceState state = store.get(world, probeX[i], probeY[i], probeZ[i]);
+        blackhole.consume(state.isBlocking(TICK));
+        blackhole.consume(state.getLastSmeltTick());
+        blackhole.consume(state.getProcess());
+    }
+
+    static World fakeWorld() {
+        UUID uid = UUID.randomUUID();
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[] {World.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getGameTime":
+                            return TICK;
+                        case "getUID":
+                            return uid;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    public enum Layout {
+        // One furnace per chunk, the worst case for per-chunk tables
+        SCATTERED,
+        // Rows of 32 furnaces, the way players build smelting setups
+        CLUSTERED
+    }
+
+    /**
+     * Furnace positions and what is tracked for each, filled the same way into
+     * both layouts. Every furnace has smelted once, one in ten is blocked after
+     * a failure and one in twenty is smelting.
+     */
+    static final class Furnaces {
+
+        final int[] x;
+        final int[] y;
+        final int[] z;
+
+        private Furnaces(int count) {
+            x = new int[count];
+            y = new int[count];
+            z = new int[count];
+        }
+
+        static Furnaces place(int count, Layout layout, long seed) {
+            SplittableRandom random = new SplittableRandom(seed);
+            Set<Long> taken = new HashSet<>();
+            Furnaces furnaces = new Furnaces(count);
+            int i = 0;
+            while (i < count) {
+                int x = random.nextInt(-20_000, 20_000);
+                int y = random.nextInt(-64, 300);
+                int z = random.nextInt(-20_000, 20_000);
+                int row = layout == Layout.CLUSTERED ? Math.min(32, count - i) : 1;
+                for (int k = 0; k < row; k++) {
+                    int furnaceX = x + (k & 15);
+                    int furnaceY = y + (k >> 4);
+                    if (taken.add(BlockKey.pack(furnaceX, furnaceY, z))) {
+                        furnaces.x[i] = furnaceX;
+                        furnaces.y[i] = furnaceY;
+                        furnaces.z[i] = z;
+                        i++;
+                    }
+                }
+            }
+            return furnaces;
+        }
+
+        void fillMaps(World world, Map<Location, Long> lastSmelt, Set<Location> processingFailure,
+                      Set<Location> blockedFurnaces, Map<Location, SmeltingProcess> activeProcesses) {
+            for (int i = 0; i < x.length; i++) {
+                Location location = new Location(world, x[i], y[i], z[i]);
+                lastSmelt.put(location, TICK - 100);
+                if (i % 10 == 0) {
+                    processingFailure.add(location);
+                    blockedFurnaces.add(location);
+                }
+                if (i % 20 == 1) {
+                    activeProcesses.put(location, process());
+                }
+            }
+        }
+
+        void fillStore(World world, FurnaceStateStore store) {
+            for (int i = 0; i < x.length; i++) {
+                FurnaceState state = store.getOrCreate(world, x[i], y[i], z[i]);
+                state.completeSmelting(TICK - 100);
+                if (i % 10 == 0) {
+                    state.fail(TICK - 100);
+                    state.block(TICK + 100);
+                }
+                if (i % 20 == 1) {
+                    state.startSmelting(process());
+                }
+            }
+        }
+
+        private static SmeltingProcess process() {
+            return new SmeltingProcess(null, null, null, 1, null, 200, null, TICK, 0, 0);
+        }
+    }
+}
@@ -2,31 +2,60 @@ package com.itemsmelter;
 
 import com.itemsmelter.commands.ItemSmelterCommand;
 import com.itemsmelter.config.ConfigManager;
+import com.itemsmelter.config.RecipeSnapshot;
+import com.itemsmelter.listeners.ChunkListener;
 import com.itemsmelter.listeners.FurnaceListener;
+import com.itemsmelter.listeners.FurnaceRemovalListener;
+import com.itemsmelter.listeners.PlayerListener;
+import com.itemsmelter.managers.FailureReconciler;
 import com.itemsmelter.managers.LocaleManager;
+import com.itemsmelter.managers.MetricsManager;
+import com.itemsmelter.managers.OfflineProgress;
 import com.itemsmelter.managers.PlayerSettingsManager;
 import com.itemsmelter.managers.RecipeManager;
+import com.itemsmelter.managers.SimulationManager;
 import com.itemsmelter.managers.SmeltingManager;
+import com.itemsmelter.managers.TraceManager;
+import com.itemsmelter.scheduler.TaskScheduler;
+import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.util.concurrent.CompletableFuture;
+
 public class ItemSmelter extends JavaPlugin {
 
     private static ItemSmelter instance;
+    private TaskScheduler taskScheduler;
     private ConfigManager configManager;
     private SmeltingManager smeltingManager;
     private PlayerSettingsManager playerSettingsManager;
     private RecipeManager recipeManager;
     private LocaleManager localeManager;
+    private TraceManager traceManager;
+    private FailureReconciler failureReconciler;
+    private OfflineProgress offlineProgress;
+    private SimulationManager simulationManager;
+    private MetricsManager metricsManager;
+    private CompletableFuture<RecipeSnapshot> pendingReload;
 
     @Override
     public void onEnable() {
         instance = this;
+        taskScheduler = TaskScheduler.create(this);
 
         // Initialize configuration
         saveDefaultConfig();
         configManager = new ConfigManager(this);
         configManager.loadConfiguration();
 
+        // Initialize metrics
+        metricsManager = new MetricsManager(this);
+        metricsManager.loadSettings();
+
+        // Initialize debug trace
+        traceManager = new TraceManager(this);
+        traceManager.loadSettings();
+
         // Initialize locale manager
         localeManager = new LocaleManager(this);
         localeManager.loadLocales();
@@ -35,12 +64,21 @@ public class ItemSmelter extends JavaPlugin {
         smeltingManager = new SmeltingManager(this);
         playerSettingsManager = new PlayerSettingsManager(this);
         recipeManager = new RecipeManager(this);
+        failureReconciler = new FailureReconciler(this);
+        failureReconciler.loadSettings();
+        failureReconciler.start();
+        offlineProgress = new OfflineProgress(this);
+        offlineProgress.loadSettings();
+        simulationManager = new SimulationManager(this);
 
         // Register recipes
         recipeManager.registerRecipes();
 
         // Register listeners
         getServer().getPluginManager().registerEvents(new FurnaceListener(this), this);
+        getServer().getPluginManager().registerEvents(new ChunkListener(this), this);
+        getServer().getPluginManager().registerEvents(new FurnaceRemovalListener(this), this);
+        getServer().getPluginManager().registerEvents(new PlayerListener(this), this);
 
         // Register commands
         getCommand("itemsmelter").setExecutor(new ItemSmelterCommand(this));
@@ -54,27 +92,87 @@ public class ItemSmelter extends JavaPlugin {
         if (recipeManager != null) {
             recipeManager.cleanup();
         }
+        if (failureReconciler != null) {
+            failureReconciler.stop();
+        }
+        if (simulationManager != null) {
+            simulationManager.shutdown();
+        }
+        if (metricsManager != null) {
+            metricsManager.shutdown();
+        }
         if (smeltingManager != null) {
             smeltingManager.cleanup();
         }
+        // Final synchronous flush of anything the background writers have not saved yet
         if (playerSettingsManager != null) {
             playerSettingsManager.saveSettings();
         }
         getLogger().info("ItemSmelter disabled!");
     }
 
-    public void reload() {
-        reloadConfig();
-        configManager.loadConfiguration();
-        localeManager.loadLocales();
+    @Override
+    public FileConfiguration getConfig() {
+        // Once loaded, the published snapshot is the configuration. Callers get a
+        // copy so they cannot change what the managers read
+        RecipeSnapshot snapshot = configManager != null ? configManager.getSnapshot() : null;
+        return snapshot != null ? snapshot.copyConfig() : super.getConfig();
+    }
+
+    /**
+     * Reloads config.yml and the locales. Files are read and parsed off the main
+     * thread, only publishing the result and the Bukkit recipe calls run on the
+     * global thread. The future completes there once everything is applied.
+     */
+    public synchronized CompletableFuture<RecipeSnapshot> reload() {
+        // Reloads requested while one is running share its result
+        if (pendingReload != null && !pendingReload.isDone()) {
+            return pendingReload;
+        }
+
+        CompletableFuture<RecipeSnapshot> future = new CompletableFuture<>();
+        pendingReload = future;
+        taskScheduler.runAsync(() -> {
+            try {
+                RecipeSnapshot snapshot = configManager.loadSnapshot();
+                LocaleManager.Locales locales = localeManager.parseLocales(snapshot);
+                taskScheduler.runGlobal(() -> {
+                    try {
+                        applyReload(snapshot, locales);
+                        future.complete(snapshot);
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    }
+                });
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private void applyReload(RecipeSnapshot snapshot, LocaleManager.Locales locales) {
+        long start = metricsManager.start();
+        // Config and locales go live together, before anything reads them
+        configManager.publish(snapshot);
+        localeManager.publish(locales);
+        metricsManager.loadSettings();
+        traceManager.loadSettings();
+        failureReconciler.loadSettings();
+        offlineProgress.loadSettings();
         smeltingManager.reload();
         recipeManager.registerRecipes();
+        metricsManager.record(MetricsManager.Timer.CONFIG_RELOAD, start);
     }
 
     public static ItemSmelter getInstance() {
         return instance;
     }
 
+    public TaskScheduler getTaskScheduler() {
+        return taskScheduler;
+    }
+
     public ConfigManager getConfigManager() {
         return configManager;
     }
@@ -94,4 +192,24 @@ public class ItemSmelter extends JavaPlugin {
     public LocaleManager getLocaleManager() {
         return localeManager;
     }
+
+    public TraceManager getTraceManager() {
+        return traceManager;
+    }
+
+    public FailureReconciler getFailureReconciler() {
+        return failureReconciler;
+    }
+
+    public OfflineProgress getOfflineProgress() {
+        return offlineProgress;
+    }
+
+    public SimulationManager getSimulationManager() {
+        return simulationManager;
+    }
+
+    public MetricsManager getMetricsManager() {
+        return metricsManager;
+    }
 }
\ No newline at end of file
@@ -1,6 +1,10 @@
 package com.itemsmelter.commands;
 
 import com.itemsmelter.ItemSmelter;
+import com.itemsmelter.managers.MetricsManager;
+import com.itemsmelter.managers.Placeholder;
+import com.itemsmelter.managers.SimulationManager;
+import com.itemsmelter.managers.TraceManager;
 import com.itemsmelter.models.SmeltableItem;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -9,9 +13,11 @@ import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Level;
 
 public class ItemSmelterCommand implements CommandExecutor, TabCompleter {
 
@@ -31,6 +37,9 @@ public class ItemSmelterCommand implements CommandExecutor, TabCompleter {
                 sender.sendMessage("§e/itemsmelter reload §7- Reload configuration");
                 sender.sendMessage("§e/itemsmelter recipes §7- Show loaded recipes");
                 sender.sendMessage("§e/itemsmelter info §7- Show plugin information");
+                sender.sendMessage("§e/itemsmelter trace <dump|clear> §7- Show or clear the debug trace");
+                sender.sendMessage("§e/itemsmelter simulate <item|all> <samples> [distribution] §7- Simulate smelt yields");
+                sender.sendMessage("§e/itemsmelter metrics [reset] §7- Show hot path timings and smelt counters");
             }
             return true;
         }
@@ -46,26 +55,8 @@ public class ItemSmelterCommand implements CommandExecutor, TabCompleter {
                     return true;
                 }
 
-                try {
-                    plugin.reload();
-                    if (sender instanceof Player) {
-                        Player player = (Player) sender;
-                        sender.sendMessage(plugin.getLocaleManager().getMessage(player.getUniqueId(), "reload_success"));
-                        
-                        Map<String, String> replacements = new HashMap<>();
-                        replacements.put("items", String.valueOf(plugin.getConfigManager().getLoadedItemsCount()));
-                        sender.sendMessage(plugin.getLocaleManager().getMessage(player.getUniqueId(), "info_items", replacements));
-                    } else {
-                        sender.sendMessage("§aConfiguration reloaded successfully!");
-                    }
-                } catch (Exception e) {
-                    if (sender instanceof Player) {
-                        sender.sendMessage(plugin.getLocaleManager().getMessage(((Player) sender).getUniqueId(), "reload_error"));
-                    } else {
-                        sender.sendMessage("§cError reloading configuration!");
-                    }
-                    e.printStackTrace();
-                }
+                // Files are parsed off-thread, the reply comes once the new config is live
+                plugin.reload().whenComplete((snapshot, error) -> reload(sender, error));
                 return true;
 
             case "sound":
@@ -114,9 +105,8 @@ public class ItemSmelterCommand implements CommandExecutor, TabCompleter {
                     List<String> codes = plugin.getLocaleManager().getAvailableLocaleCodes();
                     String codesList = String.join(", ", codes);
                     
-                    Map<String, String> replacements = new HashMap<>();
-                    replacements.put("languages", codesList);
-                    langPlayer.sendMessage(plugin.getLocaleManager().getMessage(langPlayer.getUniqueId(), "lang_list", replacements));
+                    langPlayer.sendMessage(plugin.getLocaleManager().getMessage(langPlayer.getUniqueId(), "lang_list",
+                            Placeholder.of("languages", codesList)));
                 } else if (args.length == 2) {
                     String code = args[1].toLowerCase();
                     
@@ -124,16 +114,14 @@ public class ItemSmelterCommand implements CommandExecutor, TabCompleter {
                         plugin.getLocaleManager().setPlayerLocale(langPlayer.getUniqueId(), code);
                         
                         String languageName = plugin.getLocaleManager().getLocaleNameByCode(code);
-                        Map<String, String> replacements = new HashMap<>();
-                        replacements.put("language", languageName);
-                        langPlayer.sendMessage(plugin.getLocaleManager().getMessage(langPlayer.getUniqueId(), "lang_changed", replacements));
+                        langPlayer.sendMessage(plugin.getLocaleManager().getMessage(langPlayer.getUniqueId(), "lang_changed",
+                                Placeholder.of("language", languageName)));
                     } else {
                         List<String> codes = plugin.getLocaleManager().getAvailableLocaleCodes();
                         String codesList = String.join(", ", codes);
                         
-                        Map<String, String> replacements = new HashMap<>();
-                        replacements.put("languages", codesList);
-                        langPlayer.sendMessage(plugin.getLocaleManager().getMessage(langPlayer.getUniqueId(), "lang_invalid", replacements));
+                        langPlayer.sendMessage(plugin.getLocaleManager().getMessage(langPlayer.getUniqueId(), "lang_invalid",
+                                Placeholder.of("languages", codesList)));
                     }
                 } else {
                     langPlayer.sendMessage(plugin.getLocaleManager().getMessage(langPlayer.getUniqueId(), "lang_usage"));
@@ -154,17 +142,15 @@ public class ItemSmelterCommand implements CommandExecutor, TabCompleter {
                 
                 if (sender instanceof Player) {
                     Player recipePlayer = (Player) sender;
-                    Map<String, String> headerReplacements = new HashMap<>();
-                    headerReplacements.put("count", String.valueOf(items.size()));
-                    sender.sendMessage(plugin.getLocaleManager().getMessage(recipePlayer.getUniqueId(), "recipes_header", headerReplacements));
+                    sender.sendMessage(plugin.getLocaleManager().getMessage(recipePlayer.getUniqueId(), "recipes_header",
+                            Placeholder.of("count", items.size())));
                     
                     for (SmeltableItem item : items) {
-                        Map<String, String> itemReplacements = new HashMap<>();
-                        itemReplacements.put("id", item.getId());
-                        itemReplacements.put("material", item.getMaterial().name());
-                        itemReplacements.put("output", item.getOutputMaterial().name());
-                        itemReplacements.put("furnace", item.getSmeltIn());
-                        sender.sendMessage(plugin.getLocaleManager().getMessage(recipePlayer.getUniqueId(), "recipes_item", itemReplacements));
+                        sender.sendMessage(plugin.getLocaleManager().getMessage(recipePlayer.getUniqueId(), "recipes_item",
+                                Placeholder.of("id", item.getId()),
+                                Placeholder.of("material", item.getMaterial().name()),
+                                Placeholder.of("output", item.getOutputMaterial().name()),
+                                Placeholder.of("furnace", item.getSmeltIn().name())));
                     }
                 } else {
                     sender.sendMessage("§6=== Loaded Recipes (" + items.size() + ") ===");
@@ -183,29 +169,103 @@ public class ItemSmelterCommand implements CommandExecutor, TabCompleter {
                     sender.sendMessage("§e/itemsmelter reload §7- Reload configuration");
                     sender.sendMessage("§e/itemsmelter recipes §7- Show loaded recipes");
                     sender.sendMessage("§e/itemsmelter info §7- Show plugin information");
+                    sender.sendMessage("§e/itemsmelter trace <dump|clear> §7- Show or clear the debug trace");
+                    sender.sendMessage("§e/itemsmelter simulate <item|all> <samples> [distribution] §7- Simulate smelt yields");
+                    sender.sendMessage("§e/itemsmelter metrics [reset] §7- Show hot path timings and smelt counters");
+                }
+                return true;
+
+            case "trace":
+                if (!checkAdmin(sender)) {
+                    return true;
+                }
+
+                TraceManager trace = plugin.getTraceManager();
+                String action = args.length >= 2 ? args[1].toLowerCase() : "";
+
+                if (action.equals("dump")) {
+                    int limit = 50;
+                    if (args.length >= 3) {
+                        try {
+                            limit = Math.max(1, Integer.parseInt(args[2]));
+                        } catch (NumberFormatException e) {
+                            send(sender, "trace_usage", "§eUsage: /itemsmelter trace <dump [lines]|clear>");
+                            return true;
+                        }
+                    }
+
+                    List<TraceManager.Entry> entries = trace.getRecent(limit);
+                    if (entries.isEmpty()) {
+                        send(sender, "trace_empty", "§7The trace buffer is empty.");
+                        return true;
+                    }
+
+                    send(sender, "trace_header", "§6=== ItemSmelter Trace (" + entries.size() + ") ===",
+                            Placeholder.of("count", entries.size()));
+                    for (TraceManager.Entry entry : entries) {
+                        sender.sendMessage("§7" + entry.format());
+                    }
+                } else if (action.equals("clear")) {
+                    trace.clear();
+                    send(sender, "trace_cleared", "§aTrace buffer cleared.");
+                } else {
+                    send(sender, "trace_usage", "§eUsage: /itemsmelter trace <dump [lines]|clear>");
+                }
+                return true;
+
+            case "simulate":
+                if (!checkAdmin(sender)) {
+                    return true;
+                }
+                simulate(sender, args);
+                return true;
+
+            case "metrics":
+                if (!checkAdmin(sender)) {
+                    return true;
                 }
+
+                MetricsManager metrics = plugin.getMetricsManager();
+                if (args.length >= 2 && args[1].equalsIgnoreCase("reset")) {
+                    metrics.reset();
+                    send(sender, "metrics_reset", "§aMetrics reset.");
+                    return true;
+                }
+                if (!metrics.isEnabled()) {
+                    send(sender, "metrics_disabled", "§7Metrics are disabled in config.yml.");
+                    return true;
+                }
+                sendMetrics(sender, metrics);
                 return true;
 
             case "info":
-                Map<String, String> infoReplacements = new HashMap<>();
-                infoReplacements.put("version", plugin.getDescription().getVersion());
-                infoReplacements.put("items", String.valueOf(plugin.getConfigManager().getLoadedItemsCount()));
-                infoReplacements.put("recipes", String.valueOf(plugin.getRecipeManager().getRegisteredCount()));
-                infoReplacements.put("author", String.join(", ", plugin.getDescription().getAuthors()));
+                String version = plugin.getDescription().getVersion();
+                int loadedItems = plugin.getConfigManager().getLoadedItemsCount();
+                int registered = plugin.getRecipeManager().getRegisteredCount();
+                String author = String.join(", ", plugin.getDescription().getAuthors());
+                int queue = plugin.getFailureReconciler().getQueueDepth();
+                String time = String.format("%.3f", plugin.getFailureReconciler().getLastTickNanos() / 1_000_000.0);
                 
                 if (sender instanceof Player) {
                     Player infoPlayer = (Player) sender;
                     sender.sendMessage(plugin.getLocaleManager().getMessage(infoPlayer.getUniqueId(), "info_header"));
-                    sender.sendMessage(plugin.getLocaleManager().getMessage(infoPlayer.getUniqueId(), "info_version", infoReplacements));
-                    sender.sendMessage(plugin.getLocaleManager().getMessage(infoPlayer.getUniqueId(), "info_items", infoReplacements));
-                    sender.sendMessage(plugin.getLocaleManager().getMessage(infoPlayer.getUniqueId(), "info_recipes", infoReplacements));
-                    sender.sendMessage(plugin.getLocaleManager().getMessage(infoPlayer.getUniqueId(), "info_author", infoReplacements));
+                    sender.sendMessage(plugin.getLocaleManager().getMessage(infoPlayer.getUniqueId(), "info_version",
+                            Placeholder.of("version", version)));
+                    sender.sendMessage(plugin.getLocaleManager().getMessage(infoPlayer.getUniqueId(), "info_items",
+                            Placeholder.of("items", loadedItems)));
+                    sender.sendMessage(plugin.getLocaleManager().getMessage(infoPlayer.getUniqueId(), "info_recipes",
+                            Placeholder.of("recipes", registered)));
+                    sender.sendMessage(plugin.getLocaleManager().getMessage(infoPlayer.getUniqueId(), "info_author",
+                            Placeholder.of("author", author)));
+                    sender.sendMessage(plugin.getLocaleManager().getMessage(infoPlayer.getUniqueId(), "info_reconciler",
+                            Placeholder.of("queue", queue), Placeholder.of("time", time)));
                 } else {
                     sender.sendMessage("§6=== ItemSmelter Info ===");
-                    sender.sendMessage("§eVersion: §f" + infoReplacements.get("version"));
-                    sender.sendMessage("§eLoaded items: §f" + infoReplacements.get("items"));
-                    sender.sendMessage("§eRegistered recipes: §f" + infoReplacements.get("recipes"));
-                    sender.sendMessage("§eAuthor: §f" + infoReplacements.get("author"));
+                    sender.sendMessage("§eVersion: §f" + version);
+                    sender.sendMessage("§eLoaded items: §f" + loadedItems);
+                    sender.sendMessage("§eRegistered recipes: §f" + registered);
+                    sender.sendMessage("§eAuthor: §f" + author);
+                    sender.sendMessage("§eFailure cleanup: §f" + queue + " queued, " + time + "ms last tick");
                 }
                 return true;
 
@@ -215,6 +275,33 @@ public class ItemSmelterCommand implements CommandExecutor, TabCompleter {
         }
     }
 
+    private void reload(CommandSender sender, Throwable error) {
+        if (error != null) {
+            if (sender instanceof Player) {
+                sender.sendMessage(plugin.getLocaleManager().getMessage(((Player) sender).getUniqueId(), "reload_error"));
+            } else {
+                sender.sendMessage("§cError reloading configuration!");
+            }
+            // Dependent stages wrap the failure, log the one that was thrown
+            Throwable cause = error;
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            plugin.getLogger().log(Level.SEVERE, "Error reloading configuration", cause);
+            return;
+        }
+
+        if (sender instanceof Player) {
+            Player player = (Player) sender;
+            sender.sendMessage(plugin.getLocaleManager().getMessage(player.getUniqueId(), "reload_success"));
+
+            sender.sendMessage(plugin.getLocaleManager().getMessage(player.getUniqueId(), "info_items",
+                    Placeholder.of("items", plugin.getConfigManager().getLoadedItemsCount())));
+        } else {
+            sender.sendMessage("§aConfiguration reloaded successfully!");
+        }
+    }
+
     private void sendHelp(Player player) {
         player.sendMessage(plugin.getLocaleManager().getMessage(player.getUniqueId(), "help_header"));
         player.sendMessage(plugin.getLocaleManager().getMessage(player.getUniqueId(), "help_reload"));
@@ -222,9 +309,168 @@ public class ItemSmelterCommand implements CommandExecutor, TabCompleter {
         player.sendMessage(plugin.getLocaleManager().getMessage(player.getUniqueId(), "help_lang"));
         player.sendMessage(plugin.getLocaleManager().getMessage(player.getUniqueId(), "help_recipes"));
         player.sendMessage(plugin.getLocaleManager().getMessage(player.getUniqueId(), "help_info"));
+        player.sendMessage(plugin.getLocaleManager().getMessage(player.getUniqueId(), "help_trace"));
+        player.sendMessage(plugin.getLocaleManager().getMessage(player.getUniqueId(), "help_simulate"));
+        player.sendMessage(plugin.getLocaleManager().getMessage(player.getUniqueId(), "help_metrics"));
         player.sendMessage(plugin.getLocaleManager().getMessage(player.getUniqueId(), "help_help"));
     }
 
+    private void simulate(CommandSender sender, String[] args) {
+        String usage = "§eUsage: /itemsmelter simulate <item|all> <samples> [uniform|worn|fresh]";
+        if (args.length < 3) {
+            send(sender, "simulate_usage", usage);
+            return;
+        }
+
+        List<SmeltableItem> items = new ArrayList<>();
+        for (SmeltableItem item : plugin.getConfigManager().getAllSmeltableItems()) {
+            if (args[1].equalsIgnoreCase("all") || item.getId().equalsIgnoreCase(args[1])
+                    || item.getMaterial().name().equalsIgnoreCase(args[1])) {
+                items.add(item);
+            }
+        }
+        if (items.isEmpty()) {
+            send(sender, "simulate_unknown_item", "§cUnknown item: " + args[1], Placeholder.of("item", args[1]));
+            return;
+        }
+        items.sort(Comparator.comparing(SmeltableItem::getId));
+
+        long samples;
+        SimulationManager.Distribution distribution;
+        try {
+            samples = Long.parseLong(args[2]);
+            distribution = args.length >= 4
+                    ? SimulationManager.Distribution.valueOf(args[3].toUpperCase())
+                    : SimulationManager.Distribution.UNIFORM;
+        } catch (IllegalArgumentException e) {
+            send(sender, "simulate_usage", usage);
+            return;
+        }
+        if (samples < 1 || samples > SimulationManager.MAX_SAMPLES) {
+            send(sender, "simulate_usage", usage);
+            return;
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<List<SimulationManager.ItemResult>> future =
+                plugin.getSimulationManager().simulate(items, samples, distribution);
+        if (future == null) {
+            send(sender, "simulate_busy", "§cA simulation is already running.");
+            return;
+        }
+
+        String distributionName = distribution.name().toLowerCase();
+        send(sender, "simulate_started", "§7Simulating " + items.size() + " items, "
+                + samples + " rolls each (" + distributionName + ")...",
+                Placeholder.of("items", items.size()), Placeholder.of("samples", samples),
+                Placeholder.of("distribution", distributionName));
+
+        // Results are computed off the main thread, report them back on it
+        future.whenComplete((results, error) -> plugin.getTaskScheduler().runGlobal(() -> {
+            if (error != null) {
+                plugin.getLogger().warning("Simulation failed: " + error.getMessage());
+                sender.sendMessage("§cSimulation failed: " + error.getMessage());
+                return;
+            }
+            reportSimulation(sender, results, (System.nanoTime() - start) / 1_000_000L);
+        }));
+    }
+
+    private void reportSimulation(CommandSender sender, List<SimulationManager.ItemResult> results, long elapsedMs) {
+        int cached = 0;
+        for (SimulationManager.ItemResult result : results) {
+            if (result.isCached()) {
+                cached++;
+            }
+
+            String mean = String.format("%.3f", result.getMean());
+            String variance = String.format("%.3f", result.getVariance());
+            String failure = String.format("%.2f", result.getFailureRate() * 100.0);
+            send(sender, "simulate_item", "§e" + result.getItemId() + "§7: mean §f" + mean
+                    + "§7, variance §f" + variance + "§7, failure §f" + failure + "%",
+                    Placeholder.of("item", result.getItemId()), Placeholder.of("samples", result.getSamples()),
+                    Placeholder.of("mean", mean), Placeholder.of("variance", variance),
+                    Placeholder.of("failure", failure));
+
+            for (SimulationManager.BandResult band : result.getBands()) {
+                String share = String.format("%.1f", band.getShare() * 100.0);
+                String bandMean = String.format("%.3f", band.getMean());
+                String bandVariance = String.format("%.3f", band.getVariance());
+                String bandFailure = String.format("%.2f", band.getFailureRate() * 100.0);
+                send(sender, "simulate_band", "§7  " + band.getLabel() + ": §f" + share
+                        + "%§7 of rolls, mean §f" + bandMean + "§7, variance §f" + bandVariance
+                        + "§7, failure §f" + bandFailure + "%",
+                        Placeholder.of("band", band.getLabel()), Placeholder.of("share", share),
+                        Placeholder.of("mean", bandMean), Placeholder.of("variance", bandVariance),
+                        Placeholder.of("failure", bandFailure));
+            }
+        }
+
+        send(sender, "simulate_done", "§aSimulated " + results.size() + " items in "
+                + elapsedMs + "ms (" + cached + " from cache)",
+                Placeholder.of("items", results.size()), Placeholder.of("time", elapsedMs),
+                Placeholder.of("cached", cached));
+    }
+
+    private void sendMetrics(CommandSender sender, MetricsManager metrics) {
+        send(sender, "metrics_header", "§6=== ItemSmelter Metrics ===");
+
+        for (MetricsManager.Timer timer : MetricsManager.Timer.values()) {
+            MetricsManager.Histogram histogram = metrics.getHistogram(timer);
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+
+            long count = histogram.getCount();
+            String mean = String.format("%.1f", histogram.getMeanNanos() / 1000.0);
+            String p50 = String.format("%.1f", histogram.getPercentile(0.5) / 1000.0);
+            String p99 = String.format("%.1f", histogram.getPercentile(0.99) / 1000.0);
+            String max = String.format("%.1f", histogram.getMaxNanos() / 1000.0);
+            send(sender, "metrics_timer", "§e" + timer.getKey() + "§7: §f" + count
+                    + "§7 calls, mean §f" + mean + "µs§7, p50 §f" + p50
+                    + "µs§7, p99 §f" + p99 + "µs§7, max §f" + max + "µs",
+                    Placeholder.of("timer", timer.getKey()), Placeholder.of("count", count),
+                    Placeholder.of("mean", mean), Placeholder.of("p50", p50),
+                    Placeholder.of("p99", p99), Placeholder.of("max", max));
+
+            long allocated = metrics.getAllocatedBytesPerCall(timer);
+            if (allocated >= 0) {
+                send(sender, "metrics_allocation", "§e" + timer.getKey() + "§7: §f" + allocated
+                        + "§7 bytes allocated per call",
+                        Placeholder.of("timer", timer.getKey()), Placeholder.of("bytes", allocated));
+            }
+        }
+
+        for (SmeltableItem item : plugin.getConfigManager().getAllSmeltableItems()) {
+            long smelts = metrics.getSmelts(item.getMaterial());
+            long failures = metrics.getFailures(item.getMaterial());
+            if (smelts == 0 && failures == 0) {
+                continue;
+            }
+
+            send(sender, "metrics_item", "§e" + item.getId() + "§7: §f" + smelts
+                    + "§7 smelted, §f" + failures + "§7 failed",
+                    Placeholder.of("item", item.getId()), Placeholder.of("smelts", smelts),
+                    Placeholder.of("failures", failures));
+        }
+    }
+
+    private boolean checkAdmin(CommandSender sender) {
+        if (sender.hasPermission("itemsmelter.admin")) {
+            return true;
+        }
+        send(sender, "no_permission", "§cYou don't have permission!");
+        return false;
+    }
+
+    private void send(CommandSender sender, String key, String consoleMessage, Placeholder... placeholders) {
+        if (sender instanceof Player) {
+            sender.sendMessage(plugin.getLocaleManager().getMessage(((Player) sender).getUniqueId(), key, placeholders));
+        } else {
+            sender.sendMessage(consoleMessage);
+        }
+    }
+
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         List<String> completions = new ArrayList<>();
@@ -236,6 +482,9 @@ public class ItemSmelterCommand implements CommandExecutor, TabCompleter {
             completions.add("recipes");
             completions.add("help");
             completions.add("info");
+            completions.add("trace");
+            completions.add("simulate");
+            completions.add("metrics");
             return filterCompletions(completions, args[0]);
         } else if (args.length == 2) {
             if (args[0].equalsIgnoreCase("sound")) {
@@ -244,7 +493,25 @@ public class ItemSmelterCommand implements CommandExecutor, TabCompleter {
                 return filterCompletions(completions, args[1]);
             } else if (args[0].equalsIgnoreCase("lang") || args[0].equalsIgnoreCase("language")) {
                 return plugin.getLocaleManager().getAvailableLocaleCodes();
+            } else if (args[0].equalsIgnoreCase("trace")) {
+                completions.add("dump");
+                completions.add("clear");
+                return filterCompletions(completions, args[1]);
+            } else if (args[0].equalsIgnoreCase("metrics")) {
+                completions.add("reset");
+                return filterCompletions(completions, args[1]);
+            } else if (args[0].equalsIgnoreCase("simulate")) {
+                completions.add("all");
+                for (SmeltableItem item : plugin.getConfigManager().getAllSmeltableItems()) {
+                    completions.add(item.getId());
+                }
+                return filterCompletions(completions, args[1]);
+            }
+        } else if (args.length == 4 && args[0].equalsIgnoreCase("simulate")) {
+            for (SimulationManager.Distribution distribution : SimulationManager.Distribution.values()) {
+                completions.add(distribution.name().toLowerCase());
             }
+            return filterCompletions(completions, args[3]);
         }
 
         return completions;
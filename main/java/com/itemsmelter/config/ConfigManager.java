@@ -2,85 +2,140 @@ package com.itemsmelter.config;
 
 import com.itemsmelter.ItemSmelter;
 import com.itemsmelter.models.DurabilityRange;
+import com.itemsmelter.models.FurnaceKind;
+import com.itemsmelter.models.RollSource;
 import com.itemsmelter.models.SmeltableItem;
+import com.itemsmelter.models.SoundProfile;
 import org.bukkit.Material;
+import org.bukkit.Sound;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
 
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 public class ConfigManager {
 
     private final ItemSmelter plugin;
-    private final Map<Material, SmeltableItem> smeltableItems;
-    private String language;
-    private final Map<String, String> messages;
+    private volatile RecipeSnapshot snapshot;
 
     public ConfigManager(ItemSmelter plugin) {
         this.plugin = plugin;
-        this.smeltableItems = new HashMap<>();
-        this.messages = new HashMap<>();
     }
 
+    /**
+     * Parses and publishes the configuration the plugin already has loaded.
+     */
     public void loadConfiguration() {
-        smeltableItems.clear();
-        messages.clear();
+        publish(parse(plugin.getConfig()));
+    }
+
+    /**
+     * Reads config.yml from disk and parses it without publishing anything.
+     * Safe to call off the main thread.
+     */
+    public RecipeSnapshot loadSnapshot() {
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(new File(plugin.getDataFolder(), "config.yml"));
+
+        // Same defaults reloadConfig() would apply
+        InputStream defaults = plugin.getResource("config.yml");
+        if (defaults != null) {
+            config.setDefaults(YamlConfiguration.loadConfiguration(new InputStreamReader(defaults, StandardCharsets.UTF_8)));
+        }
+        return parse(config);
+    }
+
+    public void publish(RecipeSnapshot snapshot) {
+        this.snapshot = snapshot;
+        plugin.getLogger().info("Configuration loaded: " + snapshot.getSmeltableItems().size() + " smeltable items");
+    }
+
+    /**
+     * Builds a snapshot from a configuration. Only touches the configuration
+     * passed in, so it can run on any thread.
+     */
+    public RecipeSnapshot parse(FileConfiguration config) {
+        Map<Material, SmeltableItem> smeltableItems = new HashMap<>();
 
         // Load language
-        language = plugin.getConfig().getString("language", "en");
+        String language = config.getString("language", "en");
 
         // Load messages
-        loadMessages();
+        Map<String, String> messages = loadMessages(config, language);
 
         // Load default items
-        loadDefaultItems();
+        loadItems(config.getConfigurationSection("default_items"), smeltableItems, false);
 
         // Load custom items (override defaults if exists)
-        loadCustomItems();
+        loadItems(config.getConfigurationSection("custom_items"), smeltableItems, true);
 
-        plugin.getLogger().info("Configuration loaded: " + smeltableItems.size() + " smeltable items");
+        // Resolve sounds once instead of on every smelt
+        SoundProfile successSound = loadSound(config, "success", "BLOCK_ANVIL_USE", 0.5, 1.5);
+        SoundProfile failureSound = loadSound(config, "failure", "ENTITY_VILLAGER_NO", 1.0, 1.0);
+
+        return new RecipeSnapshot(config, smeltableItems, messages, successSound, failureSound,
+                loadRollSource(config), config.saveToString().hashCode());
     }
 
-    private void loadMessages() {
-        ConfigurationSection msgSection = plugin.getConfig().getConfigurationSection("messages." + language);
+    private Map<String, String> loadMessages(FileConfiguration config, String language) {
+        Map<String, String> messages = new HashMap<>();
+        ConfigurationSection msgSection = config.getConfigurationSection("messages." + language);
         if (msgSection == null) {
             plugin.getLogger().warning("Messages for language '" + language + "' not found! Using defaults.");
-            return;
+            return messages;
         }
 
         for (String key : msgSection.getKeys(false)) {
             messages.put(key, msgSection.getString(key));
         }
+        return messages;
     }
 
-    private void loadDefaultItems() {
-        ConfigurationSection defaultSection = plugin.getConfig().getConfigurationSection("default_items");
-        if (defaultSection == null) return;
+    private void loadItems(ConfigurationSection section, Map<Material, SmeltableItem> smeltableItems, boolean custom) {
+        if (section == null) return;
 
-        for (String key : defaultSection.getKeys(false)) {
-            ConfigurationSection itemSection = defaultSection.getConfigurationSection(key);
+        for (String key : section.getKeys(false)) {
+            ConfigurationSection itemSection = section.getConfigurationSection(key);
             if (itemSection == null) continue;
 
             SmeltableItem item = parseSmeltableItem(key, itemSection);
             if (item != null && item.isEnabled()) {
+                // Custom items override default items
                 smeltableItems.put(item.getMaterial(), item);
+                if (custom) {
+                    plugin.getLogger().info("Loaded custom item: " + key);
+                }
             }
         }
     }
 
-    private void loadCustomItems() {
-        ConfigurationSection customSection = plugin.getConfig().getConfigurationSection("custom_items");
-        if (customSection == null) return;
+    private RollSource loadRollSource(FileConfiguration config) {
+        String modeName = config.getString("random.mode", "FAST");
+        long seed = config.getLong("random.seed", 0L);
 
-        for (String key : customSection.getKeys(false)) {
-            ConfigurationSection itemSection = customSection.getConfigurationSection(key);
-            if (itemSection == null) continue;
+        try {
+            return RollSource.of(RollSource.Mode.valueOf(modeName.toUpperCase()), seed);
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Invalid random mode: " + modeName + ", using FAST");
+            return new RollSource.Fast();
+        }
+    }
 
-            SmeltableItem item = parseSmeltableItem(key, itemSection);
-            if (item != null && item.isEnabled()) {
-                // Custom items override default items
-                smeltableItems.put(item.getMaterial(), item);
-                plugin.getLogger().info("Loaded custom item: " + key);
-            }
+    private SoundProfile loadSound(FileConfiguration config, String type, String defaultSound,
+                                   double defaultVolume, double defaultPitch) {
+        String soundName = config.getString("sounds." + type, defaultSound);
+        float volume = (float) config.getDouble("sounds." + type + "_volume", defaultVolume);
+        float pitch = (float) config.getDouble("sounds." + type + "_pitch", defaultPitch);
+
+        try {
+            return new SoundProfile(Sound.valueOf(soundName), volume, pitch);
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Invalid sound: " + soundName);
+            return null;
         }
     }
 
@@ -99,7 +154,14 @@ public class ConfigManager {
             }
 
             boolean enabled = section.getBoolean("enabled", true);
-            String smeltIn = section.getString("smelt_in", "BLAST_FURNACE");
+            String smeltInStr = section.getString("smelt_in", "BLAST_FURNACE");
+            FurnaceKind smeltIn;
+            try {
+                smeltIn = FurnaceKind.valueOf(smeltInStr.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("Invalid smelt_in '" + smeltInStr + "' for item '" + id + "', using FURNACE");
+                smeltIn = FurnaceKind.FURNACE;
+            }
             boolean ignoreSticks = section.getBoolean("ignore_sticks", true);
             boolean durabilityBased = section.getBoolean("durability_based", true);
 
@@ -113,6 +175,8 @@ public class ConfigManager {
 
             int maxDurability = section.getInt("max_durability", material.getMaxDurability());
             double smeltTimeMultiplier = section.getDouble("smelt_time_multiplier", 2.0);
+            // Items smelted per cook cycle, only useful for items that stack
+            int batchSize = Math.max(1, Math.min(section.getInt("batch_size", 1), material.getMaxStackSize()));
 
             // Parse durability ranges
             Map<Integer, DurabilityRange> durabilityRanges = new HashMap<>();
@@ -140,6 +204,7 @@ public class ConfigManager {
                     outputMaterial,
                     maxDurability,
                     smeltTimeMultiplier,
+                    batchSize,
                     durabilityRanges
             );
 
@@ -149,16 +214,20 @@ public class ConfigManager {
         }
     }
 
+    public RecipeSnapshot getSnapshot() {
+        return snapshot;
+    }
+
     public SmeltableItem getSmeltableItem(Material material) {
-        return smeltableItems.get(material);
+        return snapshot.getSmeltableItem(material);
     }
 
     public boolean isSmeltable(Material material) {
-        return smeltableItems.containsKey(material);
+        return getSmeltableItem(material) != null;
     }
 
     public String getMessage(String key) {
-        return messages.getOrDefault(key, "Message not found: " + key);
+        return snapshot.getMessages().getOrDefault(key, "Message not found: " + key);
     }
 
     public String getMessage(String key, Map<String, String> replacements) {
@@ -169,11 +238,27 @@ public class ConfigManager {
         return message;
     }
 
+    public SoundProfile getSuccessSound() {
+        return snapshot.getSuccessSound();
+    }
+
+    public SoundProfile getFailureSound() {
+        return snapshot.getFailureSound();
+    }
+
+    public RollSource getRollSource() {
+        return snapshot.getRollSource();
+    }
+
+    public int getConfigHash() {
+        return snapshot.getConfigHash();
+    }
+
     public int getLoadedItemsCount() {
-        return smeltableItems.size();
+        return snapshot.getSmeltableItems().size();
     }
 
     public Collection<SmeltableItem> getAllSmeltableItems() {
-        return smeltableItems.values();
+        return snapshot.getSmeltableItems();
     }
-}
\ No newline at end of file
+}
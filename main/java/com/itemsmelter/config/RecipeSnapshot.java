@@ -0,0 +1,124 @@
+package com.itemsmelter.config;
+
+import com.itemsmelter.models.RollSource;
+import com.itemsmelter.models.SmeltableItem;
+import com.itemsmelter.models.SoundProfile;
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything parsed from config.yml, built in one go and never changed
+ * afterwards. A reload builds a new snapshot off the main thread and
+ * publishes it with a single reference swap, so readers see either the old
+ * or the new configuration and never a mix of both.
+ */
+public final class RecipeSnapshot {
+
+    // Never handed out, read it through the accessors or take a copy
+    private final FileConfiguration config;
+    private final String configText;
+    private final String defaultsText;
+    private final Map<Material, SmeltableItem> smeltableItems;
+    // Flat view of smeltableItems indexed by Material.ordinal()
+    private final SmeltableItem[] itemsByOrdinal;
+    private final Map<String, String> messages;
+    private final SoundProfile successSound;
+    private final SoundProfile failureSound;
+    private final RollSource rollSource;
+    // Changes whenever the loaded configuration changes, used to invalidate cached results
+    private final int configHash;
+
+    RecipeSnapshot(FileConfiguration config, Map<Material, SmeltableItem> smeltableItems,
+                   Map<String, String> messages, SoundProfile successSound, SoundProfile failureSound,
+                   RollSource rollSource, int configHash) {
+        this.config = config;
+        this.configText = config != null ? config.saveToString() : "";
+        this.defaultsText = config != null && config.getDefaults() instanceof FileConfiguration
+                ? ((FileConfiguration) config.getDefaults()).saveToString() : null;
+        this.smeltableItems = Collections.unmodifiableMap(smeltableItems);
+        this.messages = Collections.unmodifiableMap(messages);
+        this.successSound = successSound;
+        this.failureSound = failureSound;
+        this.rollSource = rollSource;
+        this.configHash = configHash;
+
+        SmeltableItem[] table = new SmeltableItem[Material.values().length];
+        for (SmeltableItem item : smeltableItems.values()) {
+            table[item.getMaterial().ordinal()] = item;
+        }
+        this.itemsByOrdinal = table;
+    }
+
+    public SmeltableItem getSmeltableItem(Material material) {
+        int ordinal = material.ordinal();
+        return ordinal < itemsByOrdinal.length ? itemsByOrdinal[ordinal] : null;
+    }
+
+    /**
+     * A detached copy of the configuration, defaults included. Changing it does
+     * not affect this snapshot or anything reading from it.
+     */
+    public FileConfiguration copyConfig() {
+        YamlConfiguration copy = new YamlConfiguration();
+        try {
+            copy.loadFromString(configText);
+            if (defaultsText != null) {
+                YamlConfiguration defaults = new YamlConfiguration();
+                defaults.loadFromString(defaultsText);
+                copy.setDefaults(defaults);
+            }
+        } catch (InvalidConfigurationException e) {
+            // Both texts come from saveToString, so this would be a Bukkit bug
+            throw new IllegalStateException("Could not copy the configuration", e);
+        }
+        return copy;
+    }
+
+    public String getString(String path, String def) {
+        return config != null ? config.getString(path, def) : def;
+    }
+
+    public boolean getBoolean(String path, boolean def) {
+        return config != null ? config.getBoolean(path, def) : def;
+    }
+
+    public int getInt(String path, int def) {
+        return config != null ? config.getInt(path, def) : def;
+    }
+
+    public long getLong(String path, long def) {
+        return config != null ? config.getLong(path, def) : def;
+    }
+
+    public double getDouble(String path, double def) {
+        return config != null ? config.getDouble(path, def) : def;
+    }
+
+    public boolean isSection(String path) {
+        return config != null && config.isConfigurationSection(path);
+    }
+
+    /**
+     * Direct child keys of the section at the path, empty if there is none.
+     */
+    public Set<String> getKeys(String path) {
+        ConfigurationSection section = config != null ? config.getConfigurationSection(path) : null;
+        return section != null ? Collections.unmodifiableSet(section.getKeys(false)) : Collections.emptySet();
+    }
+
+    // Getters
+    public Collection<SmeltableItem> getSmeltableItems() { return smeltableItems.values(); }
+    public Map<String, String> getMessages() { return messages; }
+    public SoundProfile getSuccessSound() { return successSound; }
+    public SoundProfile getFailureSound() { return failureSound; }
+    public RollSource getRollSource() { return rollSource; }
+    public int getConfigHash() { return configHash; }
+}
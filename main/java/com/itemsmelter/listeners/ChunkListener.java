@@ -0,0 +1,65 @@
+package com.itemsmelter.listeners;
+
+import com.itemsmelter.ItemSmelter;
+import com.itemsmelter.managers.SmeltingManager;
+import com.itemsmelter.managers.SmeltingManager.SmeltingProcess;
+import com.itemsmelter.state.FurnaceStateStore;
+import com.itemsmelter.state.FurnaceStateStore.ChunkPartition;
+import org.bukkit.Chunk;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Keeps the furnace state store in step with loaded chunks and worlds.
+ */
+public class ChunkListener implements Listener {
+
+    private final ItemSmelter plugin;
+    private final SmeltingManager smeltingManager;
+    private final FurnaceStateStore furnaceStates;
+
+    public ChunkListener(ItemSmelter plugin) {
+        this.plugin = plugin;
+        this.smeltingManager = plugin.getSmeltingManager();
+        this.furnaceStates = smeltingManager.getFurnaceStates();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        Chunk chunk = event.getChunk();
+        ChunkPartition partition = furnaceStates.loadChunk(chunk.getWorld(), chunk.getX(), chunk.getZ());
+        if (partition == null) {
+            return;
+        }
+
+        // The parked processes are still in memory, the stored copies are stale now
+        partition.forEach(state -> {
+            SmeltingProcess process = state.getProcess();
+            if (process != null) {
+                smeltingManager.getProcessPersistence().clear(process.getFurnaceLocation());
+            }
+        });
+
+        // Work off the cycles that would have run while the chunk was away
+        plugin.getOfflineProgress().catchUp(partition, chunk.getWorld().getGameTime());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        ChunkPartition partition = furnaceStates.unloadChunk(chunk.getWorld(), chunk.getX(), chunk.getZ());
+        if (partition != null) {
+            // The event fires on the thread owning the chunk, so write before it goes
+            partition.forEach(smeltingManager::writeProcess);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        furnaceStates.unloadWorld(event.getWorld());
+    }
+}
@@ -1,13 +1,17 @@
 package com.itemsmelter.listeners;
 
 import com.itemsmelter.ItemSmelter;
+import com.itemsmelter.managers.MetricsManager;
 import com.itemsmelter.managers.SmeltingManager;
+import com.itemsmelter.managers.SmeltingManager.SmeltingProcess;
+import com.itemsmelter.managers.TraceManager;
+import com.itemsmelter.models.FurnaceKind;
 import com.itemsmelter.models.SmeltableItem;
-import org.bukkit.Bukkit;
+import com.itemsmelter.state.FurnaceState;
+import com.itemsmelter.state.FurnaceStateStore;
 import org.bukkit.Location;
 import org.bukkit.Material;
-import org.bukkit.Sound;
-import org.bukkit.block.BlastFurnace;
+import org.bukkit.block.Block;
 import org.bukkit.block.Furnace;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -17,42 +21,45 @@ import org.bukkit.event.inventory.*;
 import org.bukkit.inventory.FurnaceInventory;
 import org.bukkit.inventory.ItemStack;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-
 public class FurnaceListener implements Listener {
 
     private final ItemSmelter plugin;
     private final SmeltingManager smeltingManager;
-    private final Map<Location, Long> lastSmelt = new HashMap<>();
-    private final Set<Location> processingFailure = new HashSet<>();
-    private final Set<Location> blockedFurnaces = new HashSet<>();
+    private final FurnaceStateStore furnaceStates;
+    private final MetricsManager metrics;
 
     public FurnaceListener(ItemSmelter plugin) {
         this.plugin = plugin;
         this.smeltingManager = plugin.getSmeltingManager();
+        this.furnaceStates = smeltingManager.getFurnaceStates();
+        this.metrics = plugin.getMetricsManager();
     }
 
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onFurnaceBurn(FurnaceBurnEvent event) {
-        Location location = event.getBlock().getLocation();
+        long start = metrics.start();
+        handleFurnaceBurn(event);
+        metrics.record(MetricsManager.Timer.FURNACE_BURN, start);
+    }
 
-        // Block furnace if currently processing failure
-        if (blockedFurnaces.contains(location)) {
-            event.setCancelled(true);
+    private void handleFurnaceBurn(FurnaceBurnEvent event) {
+        Block block = event.getBlock();
+        FurnaceKind kind = FurnaceKind.of(block.getType());
+        if (kind == null) {
             return;
         }
 
-        boolean isBlastFurnace = event.getBlock().getState() instanceof BlastFurnace;
-        boolean isFurnace = event.getBlock().getState() instanceof Furnace;
+        long tick = block.getWorld().getGameTime();
+        FurnaceState state = furnaceStates.get(block);
 
-        if (!isBlastFurnace && !isFurnace) {
+        // Block furnace if currently processing failure
+        if (state != null && state.isBlocking(tick)) {
+            event.setCancelled(true);
             return;
         }
 
-        Furnace furnace = (Furnace) event.getBlock().getState();
+        // The burn event does not expose the input slot, so take the one snapshot we need
+        Furnace furnace = (Furnace) block.getState();
         ItemStack smelting = furnace.getInventory().getSmelting();
 
         if (smelting == null || smelting.getType() == Material.AIR) {
@@ -64,50 +71,99 @@ public class FurnaceListener implements Listener {
             return;
         }
 
-        String requiredFurnace = smeltableItem.getSmeltIn();
-        if ("BLAST_FURNACE".equals(requiredFurnace) && !isBlastFurnace) {
+        if (!kind.accepts(smeltableItem.getSmeltIn())) {
             event.setCancelled(true);
             return;
         }
-        if ("FURNACE".equals(requiredFurnace) && !isFurnace) {
+
+        if (state == null) {
+            state = furnaceStates.getOrCreate(block);
+        }
+        if (state.getProcess() == null) {
+            // First touch since a reload or chunk load, pick up a stored outcome
+            smeltingManager.rehydrate(state, furnace, smelting, smeltableItem);
+        }
+        SmeltingProcess process = smeltingManager.startSmelting(state, block.getLocation(), smelting, smeltableItem, null, tick);
+
+        // Doomed item - don't light the furnace for a cook that can only fail
+        if (process.isDoomed()) {
             event.setCancelled(true);
+            failSmelting(state, block, smelting.getType(), tick);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onFurnaceStartSmelt(FurnaceStartSmeltEvent event) {
+        long start = metrics.start();
+        handleFurnaceStartSmelt(event);
+        metrics.record(MetricsManager.Timer.FURNACE_START_SMELT, start);
+    }
+
+    private void handleFurnaceStartSmelt(FurnaceStartSmeltEvent event) {
+        Block block = event.getBlock();
+        FurnaceKind kind = FurnaceKind.of(block.getType());
+        if (kind == null) {
             return;
         }
 
-        if (!smeltingManager.isActivelySmelting(location)) {
-            smeltingManager.startSmelting(location, smelting, smeltableItem, null);
+        ItemStack source = event.getSource();
+        SmeltableItem smeltableItem = smeltingManager.getSmeltableItem(source);
+        if (smeltableItem == null || !kind.accepts(smeltableItem.getSmeltIn())) {
+            return;
+        }
+
+        long tick = block.getWorld().getGameTime();
+        FurnaceState state = furnaceStates.getOrCreate(block);
+        // A state without a process may still have one stored on the furnace
+        if (state.getProcess() == null) {
+            smeltingManager.rehydrate(state, (Furnace) block.getState(), source, smeltableItem);
+        }
+
+        // A new cook starts here, keep the outcome only if it was rolled for this exact item
+        SmeltingProcess process = state.getProcess();
+        if (process == null || (process.getStartTick() != tick && !process.getSourceItem().isSimilar(source))) {
+            smeltingManager.cancelSmelting(state);
+            process = smeltingManager.startSmelting(state, block.getLocation(), source, smeltableItem, null, tick);
+        }
+
+        // Doomed item - end the cook right after the duplicate window so the failure path runs without a full cycle
+        if (process.isDoomed()) {
+            event.setTotalCookTime((int) FurnaceState.DUPLICATE_WINDOW_TICKS);
+        } else {
+            // A kept or restored process may plan for more items than are left
+            int batchSize = Math.min(process.getBatchSize(), source.getAmount());
+            if (batchSize > 1) {
+                event.setTotalCookTime(SmeltingManager.scaleCookTime(event.getTotalCookTime(), batchSize));
+            }
         }
     }
 
     @EventHandler(priority = EventPriority.LOWEST)
     public void onFurnaceSmelt(FurnaceSmeltEvent event) {
+        long start = metrics.start();
+        handleFurnaceSmelt(event);
+        metrics.record(MetricsManager.Timer.FURNACE_SMELT, start);
+    }
+
+    private void handleFurnaceSmelt(FurnaceSmeltEvent event) {
         if (event.isCancelled()) {
             return;
         }
 
-        boolean isBlastFurnace = event.getBlock().getState() instanceof BlastFurnace;
-        boolean isFurnace = event.getBlock().getState() instanceof Furnace && !(event.getBlock().getState() instanceof BlastFurnace);
-
-        if (!isBlastFurnace && !isFurnace) {
+        Block block = event.getBlock();
+        FurnaceKind kind = FurnaceKind.of(block.getType());
+        if (kind == null) {
             return;
         }
 
-        Location location = event.getBlock().getLocation();
-
-        // Skip if already processing failure
-        if (processingFailure.contains(location) || blockedFurnaces.contains(location)) {
-            event.setCancelled(true);
-            return;
-        }
+        long tick = block.getWorld().getGameTime();
+        FurnaceState state = furnaceStates.get(block);
 
-        // Prevent duplicate processing
-        long now = System.currentTimeMillis();
-        Long last = lastSmelt.get(location);
-        if (last != null && (now - last) < 200) {
+        // Skip if already processing failure, or if this is a duplicate of the last smelt
+        if (state != null && (state.isBlocking(tick) || state.isDuplicateSmelt(tick))) {
             event.setCancelled(true);
             return;
         }
-        lastSmelt.put(location, now);
 
         ItemStack source = event.getSource();
         SmeltableItem smeltableItem = smeltingManager.getSmeltableItem(source);
@@ -117,32 +173,44 @@ public class FurnaceListener implements Listener {
         }
 
         // Check furnace type matches requirement
-        String requiredFurnace = smeltableItem.getSmeltIn();
-        if ("BLAST_FURNACE".equals(requiredFurnace) && !isBlastFurnace) {
+        if (!kind.accepts(smeltableItem.getSmeltIn())) {
             event.setCancelled(true);
             return;
         }
-        if ("FURNACE".equals(requiredFurnace) && !isFurnace) {
-            event.setCancelled(true);
-            return;
+
+        if (state == null) {
+            state = furnaceStates.getOrCreate(block);
+        }
+        // A state without a process may still have one stored on the furnace
+        Furnace furnace = null;
+        if (state.getProcess() == null) {
+            furnace = (Furnace) block.getState();
+            smeltingManager.rehydrate(state, furnace, source, smeltableItem);
         }
 
-        // Calculate output
-        int outputAmount = smeltingManager.calculateOutputAmount(source, smeltableItem);
+        // Outcome was rolled when the cook started
+        SmeltingProcess process = state.getProcess();
+        int outputAmount;
+        if (process != null && process.getBatchSize() > 1 && process.getSourceItem().getType() == source.getType()) {
+            if (furnace == null) {
+                furnace = (Furnace) block.getState();
+            }
+            // The live inventory of the one snapshot taken for this event
+            outputAmount = smeltingManager.consumeBatch(process, furnace.getInventory());
+        } else {
+            outputAmount = smeltingManager.resolveOutputAmount(state, source, smeltableItem, block.getLocation(), tick);
+        }
 
-        plugin.getLogger().info("Smelting " + source.getType() + " - Output: " + outputAmount);
+        TraceManager trace = plugin.getTraceManager();
+        if (trace.shouldTrace(TraceManager.Level.INFO, smeltableItem, block.getWorld())) {
+            trace.record(TraceManager.Level.INFO, "Smelting " + source.getType() + " at " + block.getX() + ","
+                    + block.getY() + "," + block.getZ() + " - Output: " + outputAmount);
+        }
 
         if (outputAmount <= 0) {
             // FAILURE - Cancel and mark for removal
             event.setCancelled(true);
-            processingFailure.add(location);
-            blockedFurnaces.add(location);
-
-            // Immediate removal
-            Bukkit.getScheduler().runTask(plugin, () -> {
-                handleFailedSmelting(location);
-            });
-
+            failSmelting(state, block, source.getType(), tick);
             return;
         }
 
@@ -150,124 +218,42 @@ public class FurnaceListener implements Listener {
         ItemStack customResult = new ItemStack(smeltableItem.getOutputMaterial(), outputAmount);
         event.setResult(customResult);
 
-        Bukkit.getScheduler().runTask(plugin, () -> {
-            playSound(location, "success");
-        });
+        smeltingManager.playSound(block.getLocation(), plugin.getConfigManager().getSuccessSound(), state, tick);
 
-        smeltingManager.completeSmelting(location);
+        smeltingManager.completeSmelting(state, tick);
+        metrics.countSmelt(source.getType());
     }
 
-    private void handleFailedSmelting(Location location) {
-        if (!(location.getBlock().getState() instanceof Furnace)) {
-            processingFailure.remove(location);
-            blockedFurnaces.remove(location);
-            return;
-        }
-
-        Furnace furnace = (Furnace) location.getBlock().getState();
-        FurnaceInventory inv = furnace.getInventory();
-
-        ItemStack smelting = inv.getSmelting();
-
-        plugin.getLogger().info("handleFailedSmelting - Item: " + (smelting != null ? smelting.getType() : "null"));
-
-        if (smelting != null && smelting.getType() != Material.AIR) {
-            // Store the material type for checking
-            Material smeltingType = smelting.getType();
-
-            // Remove item completely
-            if (smelting.getAmount() > 1) {
-                smelting.setAmount(smelting.getAmount() - 1);
-                inv.setSmelting(smelting);
-            } else {
-                inv.setSmelting(new ItemStack(Material.AIR));
-            }
-
-            // Reset cook time only
-            furnace.setCookTime((short) 0);
-
-            // Force update
-            furnace.update(true, false);
-
-            plugin.getLogger().info("Removed item, scheduling checks...");
-
-            // Multiple checks to ensure removal
-            for (int i = 1; i <= 5; i++) {
-                final int tick = i;
-                Bukkit.getScheduler().runTaskLater(plugin, () -> {
-                    if (location.getBlock().getState() instanceof Furnace) {
-                        Furnace f = (Furnace) location.getBlock().getState();
-                        FurnaceInventory fInv = f.getInventory();
-                        ItemStack check = fInv.getSmelting();
-
-                        // If item reappeared and it's a custom smeltable item
-                        if (check != null && check.getType() == smeltingType) {
-                            SmeltableItem smeltable = smeltingManager.getSmeltableItem(check);
-                            if (smeltable != null) {
-                                plugin.getLogger().warning("Tick " + tick + ": Item still there, removing again!");
-                                fInv.setSmelting(new ItemStack(Material.AIR));
-                                f.setCookTime((short) 0);
-                                f.update(true, false);
-                            }
-                        }
-                    }
-
-                    // Unblock furnace after last check
-                    if (tick == 5) {
-                        processingFailure.remove(location);
-                        blockedFurnaces.remove(location);
-                        plugin.getLogger().info("Furnace unblocked");
-                    }
-                }, i);
-            }
-
-            // Play failure sound
-            playSound(location, "failure");
-        } else {
-            processingFailure.remove(location);
-            blockedFurnaces.remove(location);
-        }
+    private void failSmelting(FurnaceState state, Block block, Material material, long tick) {
+        state.fail(tick);
+        metrics.countFailure(material);
 
-        smeltingManager.completeSmelting(location);
-    }
-
-    private void playSound(Location location, String type) {
-        String soundName = plugin.getConfig().getString("sounds." + type, "BLOCK_ANVIL_USE");
-        float volume = (float) plugin.getConfig().getDouble("sounds." + type + "_volume", 0.5);
-        float pitch = (float) plugin.getConfig().getDouble("sounds." + type + "_pitch", 1.0);
-
-        try {
-            Sound sound = Sound.valueOf(soundName);
-            for (Player player : Bukkit.getOnlinePlayers()) {
-                if (player.getWorld().equals(location.getWorld()) &&
-                        player.getLocation().distance(location) <= 16) {
-                    if (plugin.getPlayerSettingsManager().isSoundEnabled(player)) {
-                        player.playSound(location, sound, volume, pitch);
-                    }
-                }
-            }
-        } catch (IllegalArgumentException e) {
-            plugin.getLogger().warning("Invalid sound: " + soundName);
-        }
+        // Removal and follow-up checks run from the reconciler on the next tick
+        plugin.getFailureReconciler().enqueue(block.getLocation(), state, material);
     }
 
     @EventHandler(priority = EventPriority.LOWEST)
     public void onInventoryClick(InventoryClickEvent event) {
+        long start = metrics.start();
+        handleInventoryClick(event);
+        metrics.record(MetricsManager.Timer.INVENTORY_CLICK, start);
+    }
+
+    private void handleInventoryClick(InventoryClickEvent event) {
         if (!(event.getWhoClicked() instanceof Player)) {
             return;
         }
 
         Player player = (Player) event.getWhoClicked();
 
-        if (!(event.getView().getTopInventory().getHolder() instanceof Furnace)) {
+        // Resolve from the inventory type, getHolder() would snapshot the furnace
+        FurnaceKind kind = FurnaceKind.of(event.getView().getTopInventory().getType());
+        if (kind == null) {
             return;
         }
 
-        boolean isBlastFurnace = event.getView().getTopInventory().getHolder() instanceof BlastFurnace;
-        boolean isFurnace = event.getView().getTopInventory().getHolder() instanceof Furnace && !isBlastFurnace;
-
         if (event.isShiftClick() && event.getClickedInventory() != null &&
-                event.getClickedInventory().getHolder() == player) {
+                event.getClickedInventory().getType() == InventoryType.PLAYER) {
 
             ItemStack clicked = event.getCurrentItem();
             if (clicked != null && clicked.getType() != Material.AIR) {
@@ -280,12 +266,7 @@ public class FurnaceListener implements Listener {
                         return;
                     }
 
-                    String requiredFurnace = smeltableItem.getSmeltIn();
-                    if ("BLAST_FURNACE".equals(requiredFurnace) && !isBlastFurnace) {
-                        event.setCancelled(true);
-                        return;
-                    }
-                    if ("FURNACE".equals(requiredFurnace) && !isFurnace) {
+                    if (!kind.accepts(smeltableItem.getSmeltIn())) {
                         event.setCancelled(true);
                         return;
                     }
@@ -293,9 +274,8 @@ public class FurnaceListener implements Listener {
             }
         }
 
-        if (event.getClickedInventory() != null &&
-                event.getClickedInventory().getHolder() instanceof Furnace &&
-                event.getSlot() == 0) {
+        // Raw slot 0 is the input slot of the furnace view
+        if (event.getRawSlot() == 0) {
 
             ItemStack cursor = event.getCursor();
 
@@ -309,12 +289,7 @@ public class FurnaceListener implements Listener {
                         return;
                     }
 
-                    String requiredFurnace = smeltableItem.getSmeltIn();
-                    if ("BLAST_FURNACE".equals(requiredFurnace) && !isBlastFurnace) {
-                        event.setCancelled(true);
-                        return;
-                    }
-                    if ("FURNACE".equals(requiredFurnace) && !isFurnace) {
+                    if (!kind.accepts(smeltableItem.getSmeltIn())) {
                         event.setCancelled(true);
                         return;
                     }
@@ -333,19 +308,23 @@ public class FurnaceListener implements Listener {
 
     @EventHandler(priority = EventPriority.LOWEST)
     public void onInventoryDrag(InventoryDragEvent event) {
+        long start = metrics.start();
+        handleInventoryDrag(event);
+        metrics.record(MetricsManager.Timer.INVENTORY_DRAG, start);
+    }
+
+    private void handleInventoryDrag(InventoryDragEvent event) {
         if (!(event.getWhoClicked() instanceof Player)) {
             return;
         }
 
         Player player = (Player) event.getWhoClicked();
 
-        if (!(event.getView().getTopInventory().getHolder() instanceof Furnace)) {
+        FurnaceKind kind = FurnaceKind.of(event.getView().getTopInventory().getType());
+        if (kind == null) {
             return;
         }
 
-        boolean isBlastFurnace = event.getView().getTopInventory().getHolder() instanceof BlastFurnace;
-        boolean isFurnace = event.getView().getTopInventory().getHolder() instanceof Furnace && !isBlastFurnace;
-
         if (event.getRawSlots().contains(0)) {
             ItemStack draggedItem = event.getOldCursor();
 
@@ -359,12 +338,7 @@ public class FurnaceListener implements Listener {
                         return;
                     }
 
-                    String requiredFurnace = smeltableItem.getSmeltIn();
-                    if ("BLAST_FURNACE".equals(requiredFurnace) && !isBlastFurnace) {
-                        event.setCancelled(true);
-                        return;
-                    }
-                    if ("FURNACE".equals(requiredFurnace) && !isFurnace) {
+                    if (!kind.accepts(smeltableItem.getSmeltIn())) {
                         event.setCancelled(true);
                         return;
                     }
@@ -375,7 +349,13 @@ public class FurnaceListener implements Listener {
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onInventoryClose(InventoryCloseEvent event) {
-        if (!(event.getInventory().getHolder() instanceof Furnace)) {
+        long start = metrics.start();
+        handleInventoryClose(event);
+        metrics.record(MetricsManager.Timer.INVENTORY_CLOSE, start);
+    }
+
+    private void handleInventoryClose(InventoryCloseEvent event) {
+        if (FurnaceKind.of(event.getInventory().getType()) == null) {
             return;
         }
 
@@ -383,28 +363,38 @@ public class FurnaceListener implements Listener {
         Location location = furnaceInv.getLocation();
 
         if (location != null) {
-            if (smeltingManager.isActivelySmelting(location)) {
-                ItemStack smelting = furnaceInv.getSmelting();
-                if (smelting == null || smelting.getType() == Material.AIR) {
-                    smeltingManager.cancelSmelting(location);
-                }
+            FurnaceState state = furnaceStates.get(location);
+            if (state == null) {
+                return;
             }
 
-            lastSmelt.remove(location);
-            processingFailure.remove(location);
-            blockedFurnaces.remove(location);
+            // Closing the GUI clears the duplicate guard and any pending failure block
+            ItemStack smelting = furnaceInv.getSmelting();
+            if (smeltingManager.isActivelySmelting(state) && smelting != null && smelting.getType() != Material.AIR) {
+                state.clearLastSmelt();
+            } else {
+                smeltingManager.cancelSmelting(state);
+                furnaceStates.remove(state);
+            }
         }
     }
 
     @EventHandler(priority = EventPriority.HIGH)
     public void onFurnaceExtract(FurnaceExtractEvent event) {
-        if (!(event.getBlock().getState() instanceof Furnace)) {
+        long start = metrics.start();
+        handleFurnaceExtract(event);
+        metrics.record(MetricsManager.Timer.FURNACE_EXTRACT, start);
+    }
+
+    private void handleFurnaceExtract(FurnaceExtractEvent event) {
+        Block block = event.getBlock();
+        if (FurnaceKind.of(block.getType()) == null) {
             return;
         }
 
-        Location location = event.getBlock().getLocation();
-        if (smeltingManager.isActivelySmelting(location)) {
-            smeltingManager.completeSmelting(location);
+        FurnaceState state = furnaceStates.get(block);
+        if (smeltingManager.isActivelySmelting(state)) {
+            smeltingManager.completeSmelting(state, block.getWorld().getGameTime());
         }
     }
 }
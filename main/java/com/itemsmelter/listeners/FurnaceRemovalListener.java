@@ -0,0 +1,64 @@
+package com.itemsmelter.listeners;
+
+import com.itemsmelter.ItemSmelter;
+import com.itemsmelter.managers.SmeltingManager;
+import com.itemsmelter.models.FurnaceKind;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+
+import java.util.List;
+
+/**
+ * Releases the state of furnaces that stop existing, so no process or block
+ * window outlives its furnace.
+ * <p>
+ * Pistons are not handled: furnaces are tile entities and cannot be pushed or
+ * pulled. Anything that slips past these events is caught by the sweeper in
+ * {@link SmeltingManager}.
+ */
+public class FurnaceRemovalListener implements Listener {
+
+    private final SmeltingManager smeltingManager;
+
+    public FurnaceRemovalListener(ItemSmelter plugin) {
+        this.smeltingManager = plugin.getSmeltingManager();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        release(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent event) {
+        release(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        releaseAll(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        releaseAll(event.blockList());
+    }
+
+    private void releaseAll(List<Block> blocks) {
+        for (Block block : blocks) {
+            release(block);
+        }
+    }
+
+    private void release(Block block) {
+        if (FurnaceKind.of(block.getType()) != null) {
+            smeltingManager.releaseFurnace(block);
+        }
+    }
+}
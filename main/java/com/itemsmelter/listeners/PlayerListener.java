@@ -0,0 +1,50 @@
+package com.itemsmelter.listeners;
+
+import com.itemsmelter.ItemSmelter;
+import com.itemsmelter.managers.PlayerSettingsManager;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Loads preferences while a player logs in and drops them when they leave.
+ */
+public class PlayerListener implements Listener {
+
+    private final PlayerSettingsManager settingsManager;
+
+    public PlayerListener(ItemSmelter plugin) {
+        this.settingsManager = plugin.getPlayerSettingsManager();
+    }
+
+    // Runs on the login thread, so the storage read never touches the main thread
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            settingsManager.preloadPlayer(event.getUniqueId());
+        }
+    }
+
+    // Bans and the whitelist are only checked after the pre-login
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLogin(PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            settingsManager.unloadPlayer(event.getPlayer().getUniqueId());
+        }
+    }
+
+    // Until the join, a dropped connection leaves no quit event to unload with
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        settingsManager.confirmJoin(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        settingsManager.unloadPlayer(event.getPlayer().getUniqueId());
+    }
+}
@@ -0,0 +1,79 @@
+package com.itemsmelter.managers;
+
+import com.itemsmelter.ItemSmelter;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.Damageable;
+import org.bukkit.inventory.meta.ItemMeta;
+
+/**
+ * Reads the damage of an item. Chosen once at startup: servers whose item
+ * stacks expose damage directly skip the ItemMeta copy, everything else
+ * falls back to reading it through the meta.
+ */
+public abstract class DurabilityReader {
+
+    public abstract int getDamage(ItemStack item);
+
+    public abstract String getName();
+
+    public static DurabilityReader select(ItemSmelter plugin) {
+        String craftItemStack = plugin.getServer().getClass().getPackage().getName() + ".inventory.CraftItemStack";
+        try {
+            Class<?> craftClass = Class.forName(craftItemStack);
+
+            // Only trust getDurability when the server overrides it, the base one copies the meta as well
+            craftClass.getDeclaredMethod("getDurability");
+            return new DirectReader(craftClass);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            return new MetaReader();
+        }
+    }
+
+    /**
+     * Copies the ItemMeta to read the damage, works on every server.
+     */
+    public static class MetaReader extends DurabilityReader {
+
+        @Override
+        public int getDamage(ItemStack item) {
+            ItemMeta meta = item.getItemMeta();
+            if (meta instanceof Damageable) {
+                return ((Damageable) meta).getDamage();
+            }
+            return 0;
+        }
+
+        @Override
+        public String getName() {
+            return "meta";
+        }
+    }
+
+    /**
+     * Reads the damage straight from the server item stack without building its meta.
+     */
+    public static class DirectReader extends DurabilityReader {
+
+        private final Class<?> craftClass;
+        private final MetaReader fallback = new MetaReader();
+
+        private DirectReader(Class<?> craftClass) {
+            this.craftClass = craftClass;
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public int getDamage(ItemStack item) {
+            // Plain Bukkit stacks (e.g. created by other plugins) have no handle to read from
+            if (!craftClass.isInstance(item)) {
+                return fallback.getDamage(item);
+            }
+            return Math.max(item.getDurability(), 0);
+        }
+
+        @Override
+        public String getName() {
+            return "direct";
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.itemsmelter.managers;
+
+import com.itemsmelter.ItemSmelter;
+import com.itemsmelter.config.RecipeSnapshot;
+import com.itemsmelter.models.FurnaceKind;
+import com.itemsmelter.scheduler.TaskScheduler;
+import com.itemsmelter.state.FurnaceState;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.Furnace;
+import org.bukkit.inventory.FurnaceInventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Removes items whose smelt failed and keeps their furnaces blocked until the
+ * check window ends. A single repeating task works through the queue within a
+ * per-tick time budget instead of scheduling tasks for every failure.
+ * <p>
+ * On region-threaded servers the furnace may only be touched by the thread that
+ * owns it, so each failure gets one repeating task on its own region instead.
+ */
+public class FailureReconciler {
+
+    private final ItemSmelter plugin;
+    private final ArrayDeque<PendingFailure> queue = new ArrayDeque<>();
+    // Failures handled by their own region task on region-threaded servers
+    private final Set<PendingFailure> regionFailures = ConcurrentHashMap.newKeySet();
+    private TaskScheduler.Task task;
+    private int checkTicks = 5;
+    private long tickBudgetNanos = 1_000_000L;
+    private long lastTickNanos;
+
+    public FailureReconciler(ItemSmelter plugin) {
+        this.plugin = plugin;
+    }
+
+    public void loadSettings() {
+        RecipeSnapshot config = plugin.getConfigManager().getSnapshot();
+        checkTicks = Math.max(config.getInt("failure_cleanup.check_ticks", 5), 1);
+        double budgetMs = config.getDouble("failure_cleanup.tick_budget_ms", 1.0);
+        tickBudgetNanos = (long) (Math.max(budgetMs, 0.0) * 1_000_000L);
+    }
+
+    public void start() {
+        if (task == null && !plugin.getTaskScheduler().isRegionThreaded()) {
+            task = plugin.getTaskScheduler().runGlobalTimer(this::tick, 1L, 1L);
+        }
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        // Release every furnace still waiting so nothing stays blocked
+        for (PendingFailure pending : queue) {
+            pending.state.unblock();
+        }
+        queue.clear();
+        for (PendingFailure pending : regionFailures) {
+            pending.task.cancel();
+            pending.state.unblock();
+        }
+        regionFailures.clear();
+    }
+
+    public void enqueue(Location location, FurnaceState state, Material material) {
+        PendingFailure failure = new PendingFailure(location, state, material);
+        if (!plugin.getTaskScheduler().isRegionThreaded()) {
+            queue.add(failure);
+            return;
+        }
+
+        regionFailures.add(failure);
+        failure.task = plugin.getTaskScheduler().runAtTimer(location, () -> {
+            if (!process(failure)) {
+                failure.task.cancel();
+                regionFailures.remove(failure);
+            }
+        }, 1L, 1L);
+    }
+
+    private void tick() {
+        if (queue.isEmpty()) {
+            lastTickNanos = 0L;
+            return;
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + tickBudgetNanos;
+        int pending = queue.size();
+        int processed = 0;
+
+        // Always make progress on at least one entry, then stop once the budget is spent
+        while (processed < pending) {
+            PendingFailure failure = queue.poll();
+            if (process(failure)) {
+                queue.add(failure);
+            }
+            processed++;
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+
+        lastTickNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Runs the next step for a failed furnace. Returns true while it still needs checks.
+     */
+    private boolean process(PendingFailure failure) {
+        Location location = failure.location;
+        long now = location.getWorld().getGameTime();
+
+        if (!failure.removed) {
+            failure.removed = true;
+            if (!removeFailedItem(failure, now)) {
+                release(failure, now);
+                return false;
+            }
+            return true;
+        }
+
+        recheck(failure);
+
+        // Unblock furnace once the check window is over
+        if (now >= failure.windowEndTick) {
+            release(failure, now);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean removeFailedItem(PendingFailure failure, long now) {
+        Location location = failure.location;
+        Block block = location.getBlock();
+        if (FurnaceKind.of(block.getType()) == null) {
+            return false;
+        }
+
+        Furnace furnace = (Furnace) block.getState();
+        FurnaceInventory inv = furnace.getInventory();
+
+        ItemStack smelting = inv.getSmelting();
+
+        TraceManager trace = plugin.getTraceManager();
+        if (trace.shouldTrace(TraceManager.Level.DEBUG, null, location.getWorld())) {
+            trace.record(TraceManager.Level.DEBUG, "handleFailedSmelting - Item: " + (smelting != null ? smelting.getType() : "null"));
+        }
+
+        if (smelting == null || smelting.getType() == Material.AIR) {
+            return false;
+        }
+
+        // Remove item completely
+        if (smelting.getAmount() > 1) {
+            smelting.setAmount(smelting.getAmount() - 1);
+            inv.setSmelting(smelting);
+        } else {
+            inv.setSmelting(new ItemStack(Material.AIR));
+        }
+
+        // Reset cook time only
+        furnace.setCookTime((short) 0);
+
+        // Force update
+        furnace.update(true, false);
+
+        // Keep the furnace blocked while the follow-up checks run
+        failure.windowEndTick = now + checkTicks;
+        failure.state.block(failure.windowEndTick);
+
+        // Play failure sound
+        plugin.getSmeltingManager().playSound(location, plugin.getConfigManager().getFailureSound(), failure.state, now);
+        return true;
+    }
+
+    private void recheck(PendingFailure failure) {
+        Block block = failure.location.getBlock();
+        if (FurnaceKind.of(block.getType()) == null) {
+            return;
+        }
+
+        Furnace furnace = (Furnace) block.getState();
+        FurnaceInventory inv = furnace.getInventory();
+        ItemStack check = inv.getSmelting();
+
+        // If item reappeared and it's a custom smeltable item
+        if (check != null && check.getType() == failure.material
+                && plugin.getSmeltingManager().getSmeltableItem(check) != null) {
+            TraceManager trace = plugin.getTraceManager();
+            if (trace.isEnabled(TraceManager.Level.INFO)) {
+                trace.record(TraceManager.Level.INFO, failure.material + " still in furnace, removing again");
+            }
+            inv.setSmelting(new ItemStack(Material.AIR));
+            furnace.setCookTime((short) 0);
+            furnace.update(true, false);
+        }
+    }
+
+    private void release(PendingFailure failure, long now) {
+        failure.state.unblock();
+        plugin.getSmeltingManager().getFurnaceStates().releaseIfIdle(failure.state, now);
+    }
+
+    public int getQueueDepth() {
+        return queue.size() + regionFailures.size();
+    }
+
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    private static class PendingFailure {
+        private final Location location;
+        private final FurnaceState state;
+        private final Material material;
+        private boolean removed;
+        private long windowEndTick;
+        private volatile TaskScheduler.Task task;
+
+        private PendingFailure(Location location, FurnaceState state, Material material) {
+            this.location = location;
+            this.state = state;
+            this.material = material;
+        }
+    }
+}
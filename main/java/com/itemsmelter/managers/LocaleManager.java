@@ -1,6 +1,7 @@
 package com.itemsmelter.managers;
 
 import com.itemsmelter.ItemSmelter;
+import com.itemsmelter.config.RecipeSnapshot;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
@@ -12,24 +13,46 @@ import java.util.*;
 
 public class LocaleManager {
 
+    private static final Placeholder[] NO_PLACEHOLDERS = new Placeholder[0];
+
+    /**
+     * Every compiled locale together with its codes and the default. Parsed off
+     * the main thread, published as a whole and never modified afterwards.
+     */
+    public static final class Locales {
+        private static final Locales EMPTY = new Locales(Collections.emptyMap(), Collections.emptyMap(), "en_us");
+
+        private final Map<String, Map<String, MessageTemplate>> templates;
+        private final Map<String, String> localeNames; // code -> locale id
+        private final String defaultLocale;
+
+        private Locales(Map<String, Map<String, MessageTemplate>> templates, Map<String, String> localeNames,
+                        String defaultLocale) {
+            this.templates = templates;
+            this.localeNames = localeNames;
+            this.defaultLocale = defaultLocale;
+        }
+    }
+
     private final ItemSmelter plugin;
-    private final Map<String, FileConfiguration> locales = new HashMap<>();
-    private final Map<String, String> localeNames = new HashMap<>(); // code -> full name
-    private final Map<UUID, String> playerLocales = new HashMap<>();
-    private String defaultLocale;
-    private File playerLocalesFile;
-    private FileConfiguration playerLocalesConfig;
+    private volatile Locales locales = Locales.EMPTY;
 
     public LocaleManager(ItemSmelter plugin) {
         this.plugin = plugin;
-        this.playerLocalesFile = new File(plugin.getDataFolder(), "player_locales.yml");
     }
 
     public void loadLocales() {
-        locales.clear();
-        localeNames.clear();
-        
-        defaultLocale = plugin.getConfig().getString("language", "en_us");
+        publish(parseLocales(plugin.getConfigManager().getSnapshot()));
+    }
+
+    /**
+     * Reads and compiles every locale file without making them live. Safe to
+     * call off the main thread.
+     */
+    public synchronized Locales parseLocales(RecipeSnapshot pluginConfig) {
+        Map<String, Map<String, MessageTemplate>> locales = new HashMap<>();
+        Map<String, String> localeNames = new HashMap<>();
+        String defaultLocale = pluginConfig.getString("language", "en_us");
         
         File localesFolder = new File(plugin.getDataFolder(), "locales");
         if (!localesFolder.exists()) {
@@ -46,7 +69,7 @@ public class LocaleManager {
             for (File localeFile : localeFiles) {
                 String localeId = localeFile.getName().replace(".yml", "");
                 FileConfiguration config = YamlConfiguration.loadConfiguration(localeFile);
-                locales.put(localeId, config);
+                locales.put(localeId, compile(config));
                 
                 // Get locale code and name from file
                 String code = config.getString("locale_code", localeId);
@@ -63,36 +86,23 @@ public class LocaleManager {
             plugin.getLogger().warning("Default locale '" + defaultLocale + "' not found! Using en_us");
             defaultLocale = "en_us";
         }
-        
-        loadPlayerLocales();
+
+        return new Locales(locales, localeNames, defaultLocale);
     }
 
-    private void loadPlayerLocales() {
-        if (!playerLocalesFile.exists()) {
-            try {
-                playerLocalesFile.createNewFile();
-            } catch (IOException e) {
-                plugin.getLogger().warning("Could not create player_locales.yml");
-            }
-        }
-        
-        playerLocalesConfig = YamlConfiguration.loadConfiguration(playerLocalesFile);
-        
-        if (playerLocalesConfig.contains("players")) {
-            for (String uuidString : playerLocalesConfig.getConfigurationSection("players").getKeys(false)) {
-                UUID uuid = UUID.fromString(uuidString);
-                String locale = playerLocalesConfig.getString("players." + uuidString);
-                playerLocales.put(uuid, locale);
-            }
-        }
+    public void publish(Locales locales) {
+        this.locales = locales;
     }
 
-    private void savePlayerLocales() {
-        try {
-            playerLocalesConfig.save(playerLocalesFile);
-        } catch (IOException e) {
-            plugin.getLogger().warning("Could not save player_locales.yml");
+    private static Map<String, MessageTemplate> compile(FileConfiguration config) {
+        Map<String, MessageTemplate> templates = new HashMap<>();
+        for (String key : config.getKeys(false)) {
+            String message = config.getString(key);
+            if (message != null) {
+                templates.put(key, MessageTemplate.compile(message));
+            }
         }
+        return templates;
     }
 
     private void saveDefaultLocale(String fileName) {
@@ -133,8 +143,28 @@ public class LocaleManager {
                         config.set("info_items", "&eLoaded items: &f{items}");
                         config.set("info_recipes", "&eRegistered recipes: &f{recipes}");
                         config.set("info_author", "&eAuthor: &f{author}");
+                        config.set("info_reconciler", "&eFailure cleanup: &f{queue} queued, {time}ms last tick");
                         config.set("recipes_header", "&6=== Loaded Recipes ({count}) ===");
                         config.set("recipes_item", "&e{id} &7- &f{material} &7-> &f{output} &7({furnace})");
+                        config.set("help_trace", "&e/itemsmelter trace <dump|clear> &7- Show or clear the debug trace (admin)");
+                        config.set("trace_header", "&6=== ItemSmelter Trace ({count}) ===");
+                        config.set("trace_empty", "&7The trace buffer is empty.");
+                        config.set("trace_cleared", "&aTrace buffer cleared.");
+                        config.set("trace_usage", "&eUsage: /itemsmelter trace <dump [lines]|clear>");
+                        config.set("help_simulate", "&e/itemsmelter simulate <item|all> <samples> [distribution] &7- Simulate smelt yields (admin)");
+                        config.set("simulate_usage", "&eUsage: /itemsmelter simulate <item|all> <samples> [uniform|worn|fresh]");
+                        config.set("simulate_unknown_item", "&cUnknown item: {item}");
+                        config.set("simulate_busy", "&cA simulation is already running.");
+                        config.set("simulate_started", "&7Simulating {items} items, {samples} rolls each ({distribution})...");
+                        config.set("simulate_item", "&e{item}&7: mean &f{mean}&7, variance &f{variance}&7, failure &f{failure}%");
+                        config.set("simulate_band", "&7  {band}: &f{share}%&7 of rolls, mean &f{mean}&7, variance &f{variance}&7, failure &f{failure}%");
+                        config.set("simulate_done", "&aSimulated {items} items in {time}ms ({cached} from cache)");
+                        config.set("help_metrics", "&e/itemsmelter metrics [reset] &7- Show hot path timings and smelt counters (admin)");
+                        config.set("metrics_header", "&6=== ItemSmelter Metrics ===");
+                        config.set("metrics_timer", "&e{timer}&7: &f{count}&7 calls, mean &f{mean}µs&7, p50 &f{p50}µs&7, p99 &f{p99}µs&7, max &f{max}µs");
+                        config.set("metrics_item", "&e{item}&7: &f{smelts}&7 smelted, &f{failures}&7 failed");
+                        config.set("metrics_reset", "&aMetrics reset.");
+                        config.set("metrics_disabled", "&7Metrics are disabled in config.yml.");
                     } else if (fileName.equals("sru_sru.yml")) {
                         config.set("locale_code", "rus");
                         config.set("locale_name", "Русский");
@@ -152,65 +182,64 @@ public class LocaleManager {
     }
 
     public String getPlayerLocale(UUID playerId) {
-        return playerLocales.getOrDefault(playerId, defaultLocale);
+        String localeId = plugin.getPlayerSettingsManager().getLocale(playerId);
+        return localeId != null ? localeId : locales.defaultLocale;
     }
 
     public void setPlayerLocale(UUID playerId, String localeCode) {
-        String localeId = localeNames.get(localeCode.toLowerCase());
+        Locales locales = this.locales;
+        String localeId = locales.localeNames.get(localeCode.toLowerCase());
         if (localeId == null) {
             localeId = localeCode; // Try as full ID
         }
         
-        if (locales.containsKey(localeId)) {
-            playerLocales.put(playerId, localeId);
-            playerLocalesConfig.set("players." + playerId.toString(), localeId);
-            savePlayerLocales();
+        if (locales.templates.containsKey(localeId)) {
+            plugin.getPlayerSettingsManager().setLocale(playerId, localeId);
         }
     }
 
     public String getMessage(UUID playerId, String key) {
-        String localeId = getPlayerLocale(playerId);
-        FileConfiguration locale = locales.get(localeId);
+        return getMessage(playerId, key, NO_PLACEHOLDERS);
+    }
+
+    public String getMessage(UUID playerId, String key, Placeholder... placeholders) {
+        Locales locales = this.locales;
+        String localeId = plugin.getPlayerSettingsManager().getLocale(playerId);
+        Map<String, MessageTemplate> locale = localeId != null ? locales.templates.get(localeId) : null;
         if (locale == null) {
-            locale = locales.get(defaultLocale);
+            locale = locales.templates.get(locales.defaultLocale);
         }
         
         if (locale == null) {
             return "Missing locale: " + key;
         }
         
-        String message = locale.getString(key);
-        if (message == null) {
+        MessageTemplate template = locale.get(key);
+        if (template == null) {
             return "Missing translation: " + key;
         }
         
-        return message.replace("&", "§");
-    }
-
-    public String getMessage(UUID playerId, String key, Map<String, String> replacements) {
-        String message = getMessage(playerId, key);
-        for (Map.Entry<String, String> entry : replacements.entrySet()) {
-            message = message.replace("{" + entry.getKey() + "}", entry.getValue());
-        }
-        return message;
+        return template.render(placeholders);
     }
 
     public List<String> getAvailableLocaleCodes() {
-        return new ArrayList<>(localeNames.keySet());
+        return new ArrayList<>(locales.localeNames.keySet());
     }
 
     public String getLocaleNameByCode(String code) {
-        String localeId = localeNames.get(code.toLowerCase());
+        Locales locales = this.locales;
+        String localeId = locales.localeNames.get(code.toLowerCase());
         if (localeId != null) {
-            FileConfiguration locale = locales.get(localeId);
+            Map<String, MessageTemplate> locale = locales.templates.get(localeId);
             if (locale != null) {
-                return locale.getString("locale_name", code);
+                MessageTemplate name = locale.get("locale_name");
+                return name != null ? name.getText() : code;
             }
         }
         return code;
     }
 
     public boolean isValidLocaleCode(String code) {
-        return localeNames.containsKey(code.toLowerCase());
+        return locales.localeNames.containsKey(code.toLowerCase());
     }
 }
@@ -0,0 +1,106 @@
+package com.itemsmelter.managers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A locale message compiled once at load. Color codes are already translated
+ * and the text is split around its {placeholder} slots, so rendering is a
+ * single pass over the pieces.
+ */
+public final class MessageTemplate {
+
+    private final String text;
+    // literals.length == slots.length + 1
+    private final String[] literals;
+    private final String[] slots;
+    private final int literalLength;
+
+    private MessageTemplate(String text, String[] literals, String[] slots) {
+        this.text = text;
+        this.literals = literals;
+        this.slots = slots;
+
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public static MessageTemplate compile(String raw) {
+        String text = raw.replace("&", "§");
+        List<String> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+
+        int start = 0;
+        int open = text.indexOf('{');
+        while (open >= 0) {
+            int close = text.indexOf('}', open + 1);
+            if (close < 0) {
+                break;
+            }
+            // Only {word} is a slot, anything else stays literal text
+            String name = text.substring(open + 1, close);
+            if (!isSlotName(name)) {
+                open = text.indexOf('{', open + 1);
+                continue;
+            }
+            literals.add(text.substring(start, open));
+            slots.add(name);
+            start = close + 1;
+            open = text.indexOf('{', start);
+        }
+        literals.add(text.substring(start));
+
+        return new MessageTemplate(text, literals.toArray(new String[0]), slots.toArray(new String[0]));
+    }
+
+    private static boolean isSlotName(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fills the slots from the given values. Slots without a value keep their
+     * {name} so a missing argument is visible in game.
+     */
+    public String render(Placeholder... args) {
+        if (slots.length == 0 || args.length == 0) {
+            return text;
+        }
+
+        StringBuilder builder = new StringBuilder(literalLength + slots.length * 8);
+        for (int i = 0; i < slots.length; i++) {
+            builder.append(literals[i]);
+            Placeholder arg = find(args, slots[i]);
+            if (arg != null) {
+                arg.appendTo(builder);
+            } else {
+                builder.append('{').append(slots[i]).append('}');
+            }
+        }
+        builder.append(literals[slots.length]);
+        return builder.toString();
+    }
+
+    private static Placeholder find(Placeholder[] args, String slot) {
+        for (Placeholder arg : args) {
+            if (arg.getName().equals(slot)) {
+                return arg;
+            }
+        }
+        return null;
+    }
+
+    // Getters
+    public String getText() { return text; }
+}
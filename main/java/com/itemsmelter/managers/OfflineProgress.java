@@ -0,0 +1,251 @@
+package com.itemsmelter.managers;
+
+import com.itemsmelter.ItemSmelter;
+import com.itemsmelter.config.RecipeSnapshot;
+import com.itemsmelter.managers.SmeltingManager.SmeltingProcess;
+import com.itemsmelter.models.FurnaceKind;
+import com.itemsmelter.models.SmeltableItem;
+import com.itemsmelter.state.FurnaceState;
+import com.itemsmelter.state.FurnaceStateStore.ChunkPartition;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.Furnace;
+import org.bukkit.inventory.FurnaceInventory;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Catches up furnaces whose chunk was unloaded while they were smelting.
+ * When the chunk loads again the cycles that would have finished in the
+ * meantime are worked out from the elapsed world time, the fuel and the cook
+ * time, their yields are rolled in one batch and the furnace is updated once.
+ * <p>
+ * Opt-in, and limited to furnaces that were smelting when the chunk unloaded.
+ */
+public class OfflineProgress {
+
+    // Keep parked chunks around for at least an hour of world time
+    private static final long DEFAULT_MAX_TICKS = 72_000L;
+
+    private final ItemSmelter plugin;
+    private boolean enabled;
+    private long maxTicks = DEFAULT_MAX_TICKS;
+
+    public OfflineProgress(ItemSmelter plugin) {
+        this.plugin = plugin;
+    }
+
+    public void loadSettings() {
+        RecipeSnapshot config = plugin.getConfigManager().getSnapshot();
+        enabled = config.getBoolean("offline_progress.enabled", false);
+        maxTicks = Math.max(config.getLong("offline_progress.max_ticks", DEFAULT_MAX_TICKS), 0L);
+
+        // Parked chunks carry the unload tick, they have to outlive the longest catch-up
+        plugin.getSmeltingManager().getFurnaceStates().setParkedTtlTicks(
+                enabled ? Math.max(maxTicks, DEFAULT_MAX_TICKS) : DEFAULT_MAX_TICKS);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Catches up every smelting furnace of a chunk that just loaded. Must run
+     * on the thread owning the chunk.
+     */
+    public void catchUp(ChunkPartition partition, long now) {
+        if (!enabled) {
+            return;
+        }
+
+        long elapsed = Math.min(now - partition.getUnloadTick(), maxTicks);
+        if (elapsed <= 0) {
+            return;
+        }
+        partition.forEach(state -> catchUp(state, elapsed, now));
+    }
+
+    private void catchUp(FurnaceState state, long elapsed, long now) {
+        SmeltingProcess process = state.getProcess();
+        if (process == null) {
+            return;
+        }
+
+        Location location = process.getFurnaceLocation();
+        Block block = location.getBlock();
+        FurnaceKind kind = FurnaceKind.of(block.getType());
+        if (kind == null) {
+            return;
+        }
+
+        Furnace furnace = (Furnace) block.getState();
+        FurnaceInventory inv = furnace.getSnapshotInventory();
+        ItemStack input = inv.getSmelting();
+        if (input == null || input.getType() != process.getSourceItem().getType()) {
+            return;
+        }
+
+        SmeltingManager smeltingManager = plugin.getSmeltingManager();
+        SmeltableItem smeltableItem = smeltingManager.getSmeltableItem(input);
+        if (smeltableItem == null || !smeltableItem.isEnabled() || !kind.accepts(smeltableItem.getSmeltIn())) {
+            return;
+        }
+
+        // Same cook time the registered recipe uses, blast furnaces and smokers burn fuel twice as fast
+        int baseCookTime = (int) ((smeltableItem.getSmeltIn() == FurnaceKind.BLAST_FURNACE ? 100 : 200)
+                * smeltableItem.getSmeltTimeMultiplier());
+        ItemStack fuel = inv.getFuel();
+        int fuelTicks = fuel != null ? getFuelTicks(fuel.getType()) : 0;
+        if (kind != FurnaceKind.FURNACE) {
+            fuelTicks /= 2;
+        }
+        int fuelAvailable = fuelTicks > 0 ? fuel.getAmount() : 0;
+
+        Material outputMaterial = smeltableItem.getOutputMaterial();
+        ItemStack result = inv.getResult();
+        int space;
+        if (result == null || result.getType() == Material.AIR) {
+            space = outputMaterial.getMaxStackSize();
+        } else if (result.getType() == outputMaterial) {
+            space = result.getMaxStackSize() - result.getAmount();
+        } else {
+            return;
+        }
+
+        // Roll every item of the stack at once, the first batch keeps the outcome rolled before the unload
+        int available = input.getAmount();
+        int[] outputs = smeltingManager.rollOutputs(input, smeltableItem, available, location, now);
+        int[] committed = process.getBatchOutputs();
+        System.arraycopy(committed, 0, outputs, 0, Math.min(committed.length, available));
+
+        long burnLeft = furnace.getBurnTime();
+        int progress = furnace.getCookTime();
+        long clock = 0;
+        int consumed = 0;
+        int produced = 0;
+        int fuelUsed = 0;
+        int cycles = 0;
+        boolean outOfTime = false;
+
+        while (consumed < available) {
+            // Take items into the batch while their output still fits the result slot
+            int batch = 0;
+            int total = 0;
+            while (batch < smeltableItem.getBatchSize() && consumed + batch < available
+                    && total + outputs[consumed + batch] <= space) {
+                total += outputs[consumed + batch];
+                batch++;
+            }
+            if (batch == 0) {
+                break;
+            }
+
+            int cookTime = SmeltingManager.scaleCookTime(baseCookTime, batch) - (cycles == 0 ? progress : 0);
+            while (burnLeft < cookTime && fuelUsed < fuelAvailable) {
+                burnLeft += fuelTicks;
+                fuelUsed++;
+            }
+            if (burnLeft < cookTime) {
+                break;
+            }
+            if (clock + cookTime > elapsed) {
+                outOfTime = true;
+                break;
+            }
+
+            clock += cookTime;
+            burnLeft -= cookTime;
+            consumed += batch;
+            produced += total;
+            space -= total;
+            cycles++;
+
+            if (total > 0) {
+                plugin.getMetricsManager().countSmelt(input.getType());
+            } else {
+                plugin.getMetricsManager().countFailure(input.getType());
+            }
+        }
+
+        // A stalled furnace stays as it was, a running one keeps cooking the batch in flight
+        if (cycles == 0 && !outOfTime) {
+            return;
+        }
+
+        // Whatever time is left either cooks the next item or just burns the fuel down.
+        // Without a finished cycle that item is the one cooking at unload, carry its progress.
+        long idle = elapsed - clock;
+        if (outOfTime) {
+            furnace.setCookTime((short) ((cycles == 0 ? progress : 0) + idle));
+        } else {
+            furnace.setCookTime((short) 0);
+        }
+        burnLeft = Math.max(burnLeft - idle, 0L);
+        furnace.setBurnTime((short) Math.min(burnLeft, Short.MAX_VALUE));
+
+        if (consumed < available) {
+            input.setAmount(available - consumed);
+            inv.setSmelting(input);
+        } else {
+            inv.setSmelting(new ItemStack(Material.AIR));
+        }
+
+        if (fuelUsed > 0) {
+            if (fuelUsed < fuel.getAmount()) {
+                fuel.setAmount(fuel.getAmount() - fuelUsed);
+                inv.setFuel(fuel);
+            } else {
+                inv.setFuel(new ItemStack(fuel.getType() == Material.LAVA_BUCKET ? Material.BUCKET : Material.AIR));
+            }
+        }
+
+        if (produced > 0) {
+            if (result == null || result.getType() == Material.AIR) {
+                inv.setResult(new ItemStack(outputMaterial, produced));
+            } else {
+                result.setAmount(result.getAmount() + produced);
+                inv.setResult(result);
+            }
+        }
+
+        furnace.update(true, false);
+        if (cycles > 0) {
+            smeltingManager.completeSmelting(state, now);
+        }
+
+        TraceManager trace = plugin.getTraceManager();
+        if (trace.shouldTrace(TraceManager.Level.INFO, smeltableItem, location.getWorld())) {
+            trace.record(TraceManager.Level.INFO, "Offline progress at " + location.getBlockX() + ","
+                    + location.getBlockY() + "," + location.getBlockZ() + " - Cycles: " + cycles
+                    + " | Items: " + consumed + " | Output: " + produced + " | Fuel: " + fuelUsed);
+        }
+    }
+
+    /**
+     * Burn time of the common furnace fuels. Anything else is left in the fuel
+     * slot and only the fuel already burning counts.
+     */
+    static int getFuelTicks(Material material) {
+        switch (material) {
+            case LAVA_BUCKET:
+                return 20000;
+            case COAL_BLOCK:
+                return 16000;
+            case DRIED_KELP_BLOCK:
+                return 4000;
+            case BLAZE_ROD:
+                return 2400;
+            case COAL:
+            case CHARCOAL:
+                return 1600;
+            case STICK:
+                return 100;
+            case BAMBOO:
+            case SCAFFOLDING:
+                return 50;
+            default:
+                String name = material.name();
+                return name.endsWith("_PLANKS") || name.endsWith("_LOG") ? 300 : 0;
+        }
+    }
+}
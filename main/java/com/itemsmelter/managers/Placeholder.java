@@ -0,0 +1,37 @@
+package com.itemsmelter.managers;
+
+/**
+ * A named value for a {@link MessageTemplate} slot. Numbers are appended as
+ * they are, without being turned into a string first.
+ */
+public final class Placeholder {
+
+    private final String name;
+    private final String text;
+    private final long number;
+
+    private Placeholder(String name, String text, long number) {
+        this.name = name;
+        this.text = text;
+        this.number = number;
+    }
+
+    public static Placeholder of(String name, String value) {
+        return new Placeholder(name, String.valueOf(value), 0L);
+    }
+
+    public static Placeholder of(String name, long value) {
+        return new Placeholder(name, null, value);
+    }
+
+    void appendTo(StringBuilder builder) {
+        if (text != null) {
+            builder.append(text);
+        } else {
+            builder.append(number);
+        }
+    }
+
+    // Getters
+    public String getName() { return name; }
+}
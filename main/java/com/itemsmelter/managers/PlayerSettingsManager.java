@@ -1,71 +1,267 @@
 package com.itemsmelter.managers;
 
 import com.itemsmelter.ItemSmelter;
+import com.itemsmelter.models.PlayerPreferences;
+import com.itemsmelter.storage.PreferenceStorage;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Preferences of online players. A player's preferences are loaded from the
+ * storage while they log in and dropped when they quit, changes are written
+ * back in the background.
+ */
 public class PlayerSettingsManager {
 
+    // A player loaded at pre-login who has not joined by then dropped the connection
+    private static final long JOIN_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(2);
+
     private final ItemSmelter plugin;
-    private final File settingsFile;
-    private FileConfiguration settingsConfig;
-    private final Map<UUID, Boolean> soundsEnabled = new HashMap<>();
+    private final PreferenceStorage storage;
+    // Online players only
+    private final Map<UUID, PlayerPreferences> preferences = new ConcurrentHashMap<>();
+    // Changes not written yet, kept until the storage has them even if the player quits
+    private final Map<UUID, PlayerPreferences> pending = new ConcurrentHashMap<>();
+    // Loaded at pre-login but not joined yet, with the time of the load
+    private final Map<UUID, Long> awaitingJoin = new ConcurrentHashMap<>();
+    private final WriteBehind writer;
+    // Opened once legacy files are migrated, logins wait for it
+    private final CountDownLatch ready = new CountDownLatch(1);
 
     public PlayerSettingsManager(ItemSmelter plugin) {
         this.plugin = plugin;
-        this.settingsFile = new File(plugin.getDataFolder(), "player_settings.yml");
-        loadSettings();
+        this.storage = PreferenceStorage.create(plugin);
+        this.writer = new WriteBehind(plugin, "player preferences", this::writePending);
+        plugin.getLogger().info("Using " + storage.getName() + " preference storage");
+
+        // Players already online after a plugin reload never go through the login again
+        List<UUID> online = new ArrayList<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            online.add(player.getUniqueId());
+        }
+        plugin.getTaskScheduler().runAsync(() -> {
+            try {
+                migrateLegacyFiles();
+            } finally {
+                ready.countDown();
+            }
+            for (UUID playerId : online) {
+                loadOnlinePlayer(playerId);
+            }
+        });
+    }
+
+    /**
+     * Loads the preferences of a player who is logging in. They are dropped
+     * again if the player does not join in time. Blocks on the storage, only
+     * call it off the main thread.
+     */
+    public void preloadPlayer(UUID playerId) {
+        long now = System.nanoTime();
+        evictAbandoned(now);
+        if (load(playerId)) {
+            awaitingJoin.put(playerId, now);
+        }
     }
 
-    private void loadSettings() {
-        if (!settingsFile.exists()) {
+    /**
+     * Loads the preferences of a player who is already online and keeps them
+     * only if the player is still online once loaded. Blocks on the storage,
+     * only call it off the main thread.
+     */
+    public void loadOnlinePlayer(UUID playerId) {
+        load(playerId);
+        // Checked after the put, so a quit either removed the entry or is seen here
+        if (Bukkit.getPlayer(playerId) == null) {
+            preferences.remove(playerId);
+        }
+    }
+
+    /**
+     * Marks a preloaded player as joined, so their preferences stay until they quit.
+     */
+    public synchronized void confirmJoin(UUID playerId) {
+        awaitingJoin.remove(playerId);
+        // Evicted because the join took longer than the timeout
+        if (!preferences.containsKey(playerId)) {
+            plugin.getTaskScheduler().runAsync(() -> loadOnlinePlayer(playerId));
+        }
+    }
+
+    private synchronized void evictAbandoned(long now) {
+        for (Map.Entry<UUID, Long> entry : awaitingJoin.entrySet()) {
+            if (now - entry.getValue() > JOIN_TIMEOUT_NANOS && awaitingJoin.remove(entry.getKey(), entry.getValue())) {
+                preferences.remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Puts the stored preferences into the cache. Returns whether the player
+     * has an entry afterwards.
+     */
+    private boolean load(UUID playerId) {
+        try {
+            ready.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        // A change still waiting for the writer is newer than the stored copy
+        PlayerPreferences loaded = pending.get(playerId);
+        if (loaded == null) {
             try {
-                settingsFile.createNewFile();
+                loaded = storage.load(playerId);
             } catch (IOException e) {
-                plugin.getLogger().warning("Could not create player_settings.yml");
+                plugin.getLogger().warning("Could not load preferences of " + playerId + ": " + e.getMessage());
             }
         }
 
-        settingsConfig = YamlConfiguration.loadConfiguration(settingsFile);
+        // Changes made while loading win over the stored copy
+        if (loaded != null) {
+            preferences.putIfAbsent(playerId, loaded);
+        }
+        return preferences.containsKey(playerId);
+    }
+
+    public void unloadPlayer(UUID playerId) {
+        awaitingJoin.remove(playerId);
+        preferences.remove(playerId);
+        evictAbandoned(System.nanoTime());
+    }
 
-        // Load all player settings into cache
-        if (settingsConfig.contains("players")) {
-            for (String uuidString : settingsConfig.getConfigurationSection("players").getKeys(false)) {
-                UUID uuid = UUID.fromString(uuidString);
-                boolean enabled = settingsConfig.getBoolean("players." + uuidString + ".sounds_enabled", true);
-                soundsEnabled.put(uuid, enabled);
-            }
+    private void writePending() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Map<UUID, PlayerPreferences> batch = new HashMap<>(pending);
+        storage.save(batch);
+
+        // Only forget entries that did not change again while the batch was written
+        for (Map.Entry<UUID, PlayerPreferences> entry : batch.entrySet()) {
+            pending.remove(entry.getKey(), entry.getValue());
         }
     }
 
-    public void saveSettings() {
+    /**
+     * Moves player_settings.yml and player_locales.yml from older versions into
+     * the storage, once.
+     */
+    private void migrateLegacyFiles() {
+        File settingsFile = new File(plugin.getDataFolder(), "player_settings.yml");
+        File localesFile = new File(plugin.getDataFolder(), "player_locales.yml");
+        if (!settingsFile.exists() && !localesFile.exists()) {
+            return;
+        }
+
+        Map<UUID, PlayerPreferences> migrated = new HashMap<>();
+        if (settingsFile.exists()) {
+            ConfigurationSection players = YamlConfiguration.loadConfiguration(settingsFile).getConfigurationSection("players");
+            if (players != null) {
+                for (String uuidString : players.getKeys(false)) {
+                    UUID uuid = parseLegacyId(uuidString, settingsFile);
+                    if (uuid == null) {
+                        continue;
+                    }
+                    boolean enabled = players.getBoolean(uuidString + ".sounds_enabled", true);
+                    migrated.put(uuid, new PlayerPreferences(enabled, null));
+                }
+            }
+        }
+        if (localesFile.exists()) {
+            FileConfiguration localesConfig = YamlConfiguration.loadConfiguration(localesFile);
+            ConfigurationSection players = localesConfig.getConfigurationSection("players");
+            if (players != null) {
+                for (String uuidString : players.getKeys(false)) {
+                    UUID uuid = parseLegacyId(uuidString, localesFile);
+                    if (uuid == null) {
+                        continue;
+                    }
+                    migrated.put(uuid, migrated.getOrDefault(uuid, PlayerPreferences.DEFAULT)
+                            .withLocale(players.getString(uuidString)));
+                }
+            }
+        }
+
         try {
-            settingsConfig.save(settingsFile);
+            storage.save(migrated);
         } catch (IOException e) {
-            plugin.getLogger().warning("Could not save player_settings.yml");
+            plugin.getLogger().warning("Could not migrate player preferences: " + e.getMessage());
+            return;
         }
+
+        // Keep the old files around, renamed so they are not imported again
+        settingsFile.renameTo(new File(plugin.getDataFolder(), "player_settings.yml.migrated"));
+        localesFile.renameTo(new File(plugin.getDataFolder(), "player_locales.yml.migrated"));
+        plugin.getLogger().info("Migrated preferences of " + migrated.size() + " player(s) to "
+                + storage.getName() + " storage");
+    }
+
+    // A hand-edited key should cost that one entry, not the whole migration
+    private UUID parseLegacyId(String key, File file) {
+        try {
+            return UUID.fromString(key);
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Skipping invalid player id '" + key + "' in " + file.getName());
+            return null;
+        }
+    }
+
+    /**
+     * Writes any pending change right away and closes the storage, used on disable.
+     */
+    public void saveSettings() {
+        writer.flush();
+        storage.close();
+    }
+
+    private PlayerPreferences get(UUID playerId) {
+        return preferences.getOrDefault(playerId, PlayerPreferences.DEFAULT);
+    }
+
+    private void update(UUID playerId, PlayerPreferences updated) {
+        preferences.put(playerId, updated);
+        pending.put(playerId, updated);
+        writer.markDirty();
     }
 
     public boolean isSoundEnabled(Player player) {
-        return soundsEnabled.getOrDefault(player.getUniqueId(), true);
+        return get(player.getUniqueId()).isSoundsEnabled();
     }
 
     public void setSoundEnabled(Player player, boolean enabled) {
-        UUID uuid = player.getUniqueId();
-        soundsEnabled.put(uuid, enabled);
-        settingsConfig.set("players." + uuid.toString() + ".sounds_enabled", enabled);
-        saveSettings();
+        update(player.getUniqueId(), get(player.getUniqueId()).withSoundsEnabled(enabled));
     }
 
     public void toggleSound(Player player) {
         boolean current = isSoundEnabled(player);
         setSoundEnabled(player, !current);
     }
-}
\ No newline at end of file
+
+    /**
+     * Locale id chosen by the player, or null to follow the server default.
+     */
+    public String getLocale(UUID playerId) {
+        return get(playerId).getLocale();
+    }
+
+    public void setLocale(UUID playerId, String localeId) {
+        update(playerId, get(playerId).withLocale(localeId));
+    }
+}
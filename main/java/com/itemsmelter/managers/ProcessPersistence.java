@@ -0,0 +1,134 @@
+package com.itemsmelter.managers;
+
+import com.itemsmelter.ItemSmelter;
+import com.itemsmelter.managers.SmeltingManager.SmeltingProcess;
+import com.itemsmelter.models.FurnaceKind;
+import com.itemsmelter.models.SmeltableItem;
+import org.bukkit.Location;
+import org.bukkit.NamespacedKey;
+import org.bukkit.block.Block;
+import org.bukkit.block.Furnace;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.util.Arrays;
+
+/**
+ * Keeps in-flight processes on the furnace itself, so a reload or restart
+ * picks up the outcome that was already rolled instead of rolling again.
+ * <p>
+ * A process is stored as one int array in the furnace's persistent data
+ * container: version, config hash, source fingerprint, cook time, start tick
+ * (two ints) and the output of every item in the batch. It is only trusted
+ * again if the config and the item in the input slot are unchanged.
+ */
+public class ProcessPersistence {
+
+    private static final int VERSION = 3;
+    private static final int HEADER = 6;
+
+    private final ItemSmelter plugin;
+    private final DurabilityReader durabilityReader;
+    private final NamespacedKey key;
+
+    public ProcessPersistence(ItemSmelter plugin, DurabilityReader durabilityReader) {
+        this.plugin = plugin;
+        this.durabilityReader = durabilityReader;
+        this.key = new NamespacedKey(plugin, "process");
+    }
+
+    /**
+     * Identifies the source item regardless of how many are left in the stack.
+     * Only cheap data that hashes the same on every start goes in: the
+     * material name, the damage and whether the item carries meta at all.
+     */
+    public int fingerprint(ItemStack source) {
+        return fingerprint(source.getType().name(), durabilityReader.getDamage(source), source.hasItemMeta());
+    }
+
+    static int fingerprint(String material, int damage, boolean hasMeta) {
+        int hash = material.hashCode();
+        hash = 31 * hash + damage;
+        hash = 31 * hash + (hasMeta ? 1 : 0);
+        return hash;
+    }
+
+    public int[] encode(SmeltingProcess process) {
+        int[] outputs = process.getBatchOutputs();
+        int[] data = new int[HEADER + outputs.length];
+        data[0] = VERSION;
+        data[1] = process.getConfigHash();
+        data[2] = process.getSourceFingerprint();
+        data[3] = process.getCookTimeTicks();
+        data[4] = (int) (process.getStartTick() >>> 32);
+        data[5] = (int) process.getStartTick();
+        System.arraycopy(outputs, 0, data, HEADER, outputs.length);
+        return data;
+    }
+
+    /**
+     * Writes an encoded process to the furnace at the location. Must run on the
+     * thread owning the block.
+     */
+    public void write(Location location, int[] data) {
+        Block block = location.getBlock();
+        if (FurnaceKind.of(block.getType()) == null) {
+            return;
+        }
+
+        Furnace furnace = (Furnace) block.getState();
+        furnace.getPersistentDataContainer().set(key, PersistentDataType.INTEGER_ARRAY, data);
+        furnace.update(true, false);
+    }
+
+    /**
+     * Drops any stored process from the furnace at the location. Must run on
+     * the thread owning the block.
+     */
+    public void clear(Location location) {
+        Block block = location.getBlock();
+        if (FurnaceKind.of(block.getType()) == null) {
+            return;
+        }
+
+        Furnace furnace = (Furnace) block.getState();
+        PersistentDataContainer container = furnace.getPersistentDataContainer();
+        if (container.has(key, PersistentDataType.INTEGER_ARRAY)) {
+            container.remove(key);
+            furnace.update(true, false);
+        }
+    }
+
+    /**
+     * Rebuilds the process stored on a furnace snapshot, or returns null if
+     * there is none or it no longer matches the config or the input item.
+     */
+    public SmeltingProcess read(Furnace furnace, ItemStack source, SmeltableItem smeltableItem) {
+        int[] data = furnace.getPersistentDataContainer().get(key, PersistentDataType.INTEGER_ARRAY);
+        if (data == null) {
+            return null;
+        }
+
+        // The stored copy is used up either way
+        Location location = furnace.getLocation();
+        plugin.getTaskScheduler().runAt(location, () -> clear(location));
+
+        int fingerprint = fingerprint(source);
+        if (data.length <= HEADER || data[0] != VERSION
+                || data[1] != plugin.getConfigManager().getConfigHash()
+                || data[2] != fingerprint) {
+            return null;
+        }
+
+        int[] outputs = Arrays.copyOfRange(data, HEADER, data.length);
+        int outputAmount = 0;
+        for (int output : outputs) {
+            outputAmount += output;
+        }
+        long startTick = ((long) data[4] << 32) | (data[5] & 0xFFFFFFFFL);
+
+        return new SmeltingProcess(location, source.clone(), smeltableItem, outputAmount, outputs,
+                data[3], null, startTick, data[1], fingerprint);
+    }
+}
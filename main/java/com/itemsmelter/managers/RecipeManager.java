@@ -1,94 +1,253 @@
 package com.itemsmelter.managers;
 
 import com.itemsmelter.ItemSmelter;
+import com.itemsmelter.models.FurnaceKind;
 import com.itemsmelter.models.SmeltableItem;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
+import org.bukkit.Server;
 import org.bukkit.inventory.BlastingRecipe;
 import org.bukkit.inventory.FurnaceRecipe;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.Recipe;
+import org.bukkit.inventory.RecipeChoice;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Registers one furnace or blasting recipe per smeltable item, or with
+ * recipes.consolidate one recipe per output, furnace type and cook time that
+ * accepts every matching input. Yields are worked out per item either way.
+ * A reload only touches recipes that were added, removed or changed since the
+ * last one.
+ * <p>
+ * Servers that can defer the recipe resend (addRecipe/removeRecipe with a
+ * resend flag plus updateRecipes) get all changes of a reload in a single
+ * broadcast. Those methods are not part of the Bukkit API, so they are
+ * resolved through reflection once and plain calls are used without them.
+ */
 public class RecipeManager {
 
     private final ItemSmelter plugin;
-    private final List<NamespacedKey> registeredRecipes = new ArrayList<>();
-    private final List<SmeltableItem> registeredItems = new ArrayList<>();
+    // Insertion ordered so the recipe list follows the config
+    private final Map<NamespacedKey, RegisteredRecipe> registeredRecipes = new LinkedHashMap<>();
+    private final Method addRecipeDeferred;
+    private final Method removeRecipeDeferred;
+    private final Method updateRecipes;
 
     public RecipeManager(ItemSmelter plugin) {
         this.plugin = plugin;
+
+        Method add = null;
+        Method remove = null;
+        Method update = null;
+        try {
+            add = Server.class.getMethod("addRecipe", Recipe.class, boolean.class);
+            remove = Server.class.getMethod("removeRecipe", NamespacedKey.class, boolean.class);
+            update = Server.class.getMethod("updateRecipes");
+        } catch (NoSuchMethodException e) {
+            add = null;
+            remove = null;
+            update = null;
+        }
+        this.addRecipeDeferred = add;
+        this.removeRecipeDeferred = remove;
+        this.updateRecipes = update;
     }
 
     public void registerRecipes() {
-        removeRecipes();
-        registeredItems.clear();
+        long start = plugin.getMetricsManager().start();
 
-        int registered = 0;
+        boolean consolidate = plugin.getConfigManager().getSnapshot().getBoolean("recipes.consolidate", false);
+        Map<NamespacedKey, RegisteredRecipe> wanted = new LinkedHashMap<>();
+        int itemCount = 0;
         for (SmeltableItem item : plugin.getConfigManager().getAllSmeltableItems()) {
             if (!item.isEnabled()) {
                 continue;
             }
 
-            ItemStack result = new ItemStack(item.getOutputMaterial(), 1);
-            ItemStack source = new ItemStack(item.getMaterial(), 1);
-            NamespacedKey key = new NamespacedKey(plugin, "smelt_" + item.getId().toLowerCase());
+            NamespacedKey key = new NamespacedKey(plugin, consolidate ? getGroupKey(item) : "smelt_" + item.getId().toLowerCase());
+            RegisteredRecipe recipe = wanted.get(key);
+            if (recipe == null) {
+                wanted.put(key, new RegisteredRecipe(item));
+            } else {
+                recipe.add(item);
+            }
+            itemCount++;
+        }
+
+        // Drop recipes that are gone or changed, changed ones are added again below
+        int removed = 0;
+        Iterator<Map.Entry<NamespacedKey, RegisteredRecipe>> it = registeredRecipes.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<NamespacedKey, RegisteredRecipe> entry = it.next();
+            RegisteredRecipe recipe = wanted.get(entry.getKey());
+            if (recipe == null || !recipe.matches(entry.getValue())) {
+                removeRecipe(entry.getKey());
+                it.remove();
+                removed++;
+            } else {
+                // Same recipe, keep the registration but follow the new item settings
+                entry.setValue(recipe);
+            }
+        }
+
+        int added = 0;
+        for (Map.Entry<NamespacedKey, RegisteredRecipe> entry : wanted.entrySet()) {
+            if (registeredRecipes.containsKey(entry.getKey())) {
+                continue;
+            }
 
+            RegisteredRecipe recipe = entry.getValue();
             try {
-                Recipe recipe;
-                
-                if ("BLAST_FURNACE".equals(item.getSmeltIn())) {
-                    BlastingRecipe blastRecipe = new BlastingRecipe(
-                        key,
-                        result,
-                        source.getType(),
-                        0.1f,
-                        (int) (100 * item.getSmeltTimeMultiplier())
-                    );
-                    recipe = blastRecipe;
-                } else {
-                    FurnaceRecipe furnaceRecipe = new FurnaceRecipe(
-                        key,
-                        result,
-                        source.getType(),
-                        0.1f,
-                        (int) (200 * item.getSmeltTimeMultiplier())
-                    );
-                    recipe = furnaceRecipe;
-                }
-
-                Bukkit.addRecipe(recipe);
-                registeredRecipes.add(key);
-                registeredItems.add(item);
-                registered++;
-                
+                addRecipe(createRecipe(entry.getKey(), recipe));
+                registeredRecipes.put(entry.getKey(), recipe);
+                added++;
             } catch (Exception e) {
-                plugin.getLogger().warning("Failed to register recipe for " + item.getId() + ": " + e.getMessage());
+                plugin.getLogger().warning("Failed to register recipe for " + recipe.getIds() + ": " + e.getMessage());
+            }
+        }
+
+        if (added > 0 || removed > 0) {
+            flushRecipes();
+        }
+
+        // Furnaces match their input against every recipe of their type, fewer recipes mean less work per cook
+        plugin.getLogger().info("Registered " + registeredRecipes.size() + " recipe(s) for " + itemCount + " item(s) ("
+                + added + " added, " + removed + " removed)");
+        plugin.getMetricsManager().record(MetricsManager.Timer.RECIPE_REGISTRATION, start);
+    }
+
+    private static String getGroupKey(SmeltableItem item) {
+        return "group_" + (item.getSmeltIn() == FurnaceKind.BLAST_FURNACE ? "blasting_" : "smelting_")
+                + item.getOutputMaterial().name().toLowerCase() + "_" + getCookTime(item);
+    }
+
+    private Recipe createRecipe(NamespacedKey key, RegisteredRecipe recipe) {
+        ItemStack result = new ItemStack(recipe.output, 1);
+        RecipeChoice source = new RecipeChoice.MaterialChoice(new ArrayList<>(recipe.sources));
+
+        if (recipe.blasting) {
+            return new BlastingRecipe(key, result, source, 0.1f, recipe.cookTime);
+        }
+        return new FurnaceRecipe(key, result, source, 0.1f, recipe.cookTime);
+    }
+
+    private static int getCookTime(SmeltableItem item) {
+        return (int) ((item.getSmeltIn() == FurnaceKind.BLAST_FURNACE ? 100 : 200) * item.getSmeltTimeMultiplier());
+    }
+
+    private void addRecipe(Recipe recipe) throws ReflectiveOperationException {
+        if (addRecipeDeferred == null) {
+            Bukkit.addRecipe(recipe);
+            return;
+        }
+        try {
+            addRecipeDeferred.invoke(plugin.getServer(), recipe, false);
+        } catch (InvocationTargetException e) {
+            // Report what the server rejected, not the reflection wrapper
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void removeRecipe(NamespacedKey key) {
+        try {
+            if (removeRecipeDeferred != null) {
+                removeRecipeDeferred.invoke(plugin.getServer(), key, false);
+            } else {
+                Bukkit.removeRecipe(key);
             }
+        } catch (ReflectiveOperationException e) {
+            plugin.getLogger().warning("Failed to remove recipe " + key.getKey() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sends the changed recipe book to online players once, after a batch of
+     * deferred changes.
+     */
+    private void flushRecipes() {
+        if (updateRecipes == null) {
+            return;
+        }
+        try {
+            updateRecipes.invoke(plugin.getServer());
+        } catch (ReflectiveOperationException e) {
+            plugin.getLogger().warning("Failed to resend recipes: " + e.getMessage());
         }
-        
-        plugin.getLogger().info("Registered " + registered + " recipe(s)");
     }
 
     public void removeRecipes() {
-        for (NamespacedKey key : registeredRecipes) {
-            Bukkit.removeRecipe(key);
+        boolean removed = !registeredRecipes.isEmpty();
+        for (NamespacedKey key : registeredRecipes.keySet()) {
+            removeRecipe(key);
         }
         registeredRecipes.clear();
+        if (removed) {
+            flushRecipes();
+        }
     }
 
     public List<SmeltableItem> getRegisteredItems() {
-        return new ArrayList<>(registeredItems);
+        List<SmeltableItem> items = new ArrayList<>(registeredRecipes.size());
+        for (RegisteredRecipe recipe : registeredRecipes.values()) {
+            items.addAll(recipe.items);
+        }
+        return items;
     }
 
     public int getRegisteredCount() {
-        return registeredItems.size();
+        return registeredRecipes.size();
     }
 
     public void cleanup() {
         removeRecipes();
     }
+
+    /**
+     * The items behind one Bukkit recipe and the parts that end up in it.
+     */
+    private static final class RegisteredRecipe {
+        private final List<SmeltableItem> items = new ArrayList<>();
+        private final EnumSet<Material> sources = EnumSet.noneOf(Material.class);
+        private final boolean blasting;
+        private final Material output;
+        private final int cookTime;
+
+        private RegisteredRecipe(SmeltableItem item) {
+            this.blasting = item.getSmeltIn() == FurnaceKind.BLAST_FURNACE;
+            this.output = item.getOutputMaterial();
+            this.cookTime = getCookTime(item);
+            add(item);
+        }
+
+        private void add(SmeltableItem item) {
+            items.add(item);
+            sources.add(item.getMaterial());
+        }
+
+        private String getIds() {
+            List<String> ids = new ArrayList<>(items.size());
+            for (SmeltableItem item : items) {
+                ids.add(item.getId());
+            }
+            return String.join(", ", ids);
+        }
+
+        private boolean matches(RegisteredRecipe other) {
+            return blasting == other.blasting && sources.equals(other.sources)
+                    && output == other.output && cookTime == other.cookTime;
+        }
+    }
 }
@@ -0,0 +1,330 @@
+package com.itemsmelter.managers;
+
+import com.itemsmelter.ItemSmelter;
+import com.itemsmelter.models.DurabilityRange;
+import com.itemsmelter.models.SmeltableItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Monte Carlo simulation of smelt yields, used to balance durability ranges.
+ * Runs on its own fork-join pool and never touches the server thread.
+ */
+public class SimulationManager {
+
+    public static final long MAX_SAMPLES = 50_000_000L;
+    // Samples handled by one task before it stops splitting
+    private static final long CHUNK_SAMPLES = 1L << 16;
+
+    public enum Distribution {
+        // Durability spread evenly between broken and new
+        UNIFORM,
+        // Mostly worn down items
+        WORN,
+        // Mostly fresh items
+        FRESH;
+
+        int sample(SplittableRandom random, int maxDurability) {
+            double u = random.nextDouble();
+            switch (this) {
+                case WORN:
+                    u = u * u;
+                    break;
+                case FRESH:
+                    u = 1.0 - u * u;
+                    break;
+                default:
+                    break;
+            }
+            return Math.min((int) (u * (maxDurability + 1)), maxDurability);
+        }
+    }
+
+    private final ItemSmelter plugin;
+    private final ForkJoinPool pool;
+    private final Map<String, ItemResult> cache = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile int cacheConfigHash;
+
+    public SimulationManager(ItemSmelter plugin) {
+        this.plugin = plugin;
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Simulates every item off the server thread. Returns null if a simulation is already running.
+     */
+    public CompletableFuture<List<ItemResult>> simulate(List<SmeltableItem> items, long samples, Distribution distribution) {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+
+        int configHash = plugin.getConfigManager().getConfigHash();
+        if (configHash != cacheConfigHash) {
+            cache.clear();
+            cacheConfigHash = configHash;
+        }
+
+        long seed = System.nanoTime();
+        CompletableFuture<List<ItemResult>> future = CompletableFuture.supplyAsync(() -> {
+            SplittableRandom root = new SplittableRandom(seed);
+            List<ItemResult> results = new ArrayList<>(items.size());
+            List<SimulationTask> tasks = new ArrayList<>(items.size());
+
+            // Fork every uncached item first so the whole catalog runs in parallel
+            for (SmeltableItem item : items) {
+                if (cache.containsKey(cacheKey(configHash, item, samples, distribution))) {
+                    tasks.add(null);
+                    continue;
+                }
+                SimulationTask task = new SimulationTask(item, new Bands(item), distribution, 0, samples, root.split());
+                task.fork();
+                tasks.add(task);
+            }
+
+            for (int i = 0; i < items.size(); i++) {
+                SmeltableItem item = items.get(i);
+                String key = cacheKey(configHash, item, samples, distribution);
+                SimulationTask task = tasks.get(i);
+                if (task == null) {
+                    results.add(cache.get(key).asCached());
+                    continue;
+                }
+
+                ItemResult result = task.join().toResult(item.getId(), task.bands);
+                cache.put(key, result);
+                results.add(result);
+            }
+            return results;
+        }, pool);
+
+        return future.whenComplete((results, error) -> running.set(false));
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+        cache.clear();
+    }
+
+    private String cacheKey(int configHash, SmeltableItem item, long samples, Distribution distribution) {
+        return configHash + ":" + item.getId() + ":" + samples + ":" + distribution;
+    }
+
+    /**
+     * Threshold bands of one item, resolved per durability value ahead of the run.
+     */
+    private static class Bands {
+        private final String[] labels;
+        private final int[] bandByDurability;
+
+        private Bands(SmeltableItem item) {
+            if (!item.isDurabilityBased()) {
+                labels = new String[]{"fixed"};
+                bandByDurability = new int[Math.max(item.getMaxDurability(), 0) + 1];
+                return;
+            }
+
+            int[] thresholds = new int[item.getDurabilityRanges().size()];
+            int i = 0;
+            for (int threshold : item.getDurabilityRanges().keySet()) {
+                thresholds[i++] = threshold;
+            }
+            Arrays.sort(thresholds);
+
+            // Last band collects durability below every threshold
+            labels = new String[thresholds.length + 1];
+            Map<DurabilityRange, Integer> bandOf = new IdentityHashMap<>();
+            for (i = 0; i < thresholds.length; i++) {
+                labels[i] = ">=" + thresholds[i] + "%";
+                bandOf.put(item.getDurabilityRanges().get(thresholds[i]), i);
+            }
+            labels[thresholds.length] = thresholds.length > 0 ? "<" + thresholds[0] + "%" : "none";
+
+            bandByDurability = new int[Math.max(item.getMaxDurability(), 0) + 1];
+            for (int durability = 0; durability < bandByDurability.length; durability++) {
+                bandByDurability[durability] = bandOf.getOrDefault(item.getRange(durability), thresholds.length);
+            }
+        }
+    }
+
+    private static class SimulationTask extends RecursiveTask<Accumulator> {
+        private final SmeltableItem item;
+        private final Bands bands;
+        private final Distribution distribution;
+        private final long from;
+        private final long to;
+        private final SplittableRandom random;
+
+        private SimulationTask(SmeltableItem item, Bands bands, Distribution distribution,
+                               long from, long to, SplittableRandom random) {
+            this.item = item;
+            this.bands = bands;
+            this.distribution = distribution;
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+
+        @Override
+        protected Accumulator compute() {
+            if (to - from > CHUNK_SAMPLES) {
+                long mid = (from + to) >>> 1;
+                SimulationTask left = new SimulationTask(item, bands, distribution, from, mid, random.split());
+                SimulationTask right = new SimulationTask(item, bands, distribution, mid, to, random);
+                left.fork();
+                Accumulator result = right.compute();
+                result.merge(left.join());
+                return result;
+            }
+
+            Accumulator acc = new Accumulator(bands.labels.length);
+            int maxDurability = item.getMaxDurability();
+            boolean durabilityBased = item.isDurabilityBased();
+            for (long i = from; i < to; i++) {
+                int durability = durabilityBased ? distribution.sample(random, maxDurability) : maxDurability;
+                int output = item.calculateOutput(durability, random);
+                acc.add(bands.bandByDurability[Math.min(Math.max(durability, 0), bands.bandByDurability.length - 1)], output);
+            }
+            return acc;
+        }
+    }
+
+    private static class Accumulator {
+        private final long[] count;
+        private final long[] sum;
+        private final long[] sumSquares;
+        private final long[] failures;
+
+        private Accumulator(int bands) {
+            count = new long[bands];
+            sum = new long[bands];
+            sumSquares = new long[bands];
+            failures = new long[bands];
+        }
+
+        private void add(int band, int output) {
+            count[band]++;
+            sum[band] += output;
+            sumSquares[band] += (long) output * output;
+            if (output <= 0) {
+                failures[band]++;
+            }
+        }
+
+        private void merge(Accumulator other) {
+            for (int i = 0; i < count.length; i++) {
+                count[i] += other.count[i];
+                sum[i] += other.sum[i];
+                sumSquares[i] += other.sumSquares[i];
+                failures[i] += other.failures[i];
+            }
+        }
+
+        private ItemResult toResult(String itemId, Bands bands) {
+            long totalCount = 0;
+            long totalSum = 0;
+            long totalSquares = 0;
+            long totalFailures = 0;
+            List<BandResult> bandResults = new ArrayList<>();
+
+            for (int i = 0; i < count.length; i++) {
+                totalCount += count[i];
+                totalSum += sum[i];
+                totalSquares += sumSquares[i];
+                totalFailures += failures[i];
+            }
+
+            for (int i = 0; i < count.length; i++) {
+                if (count[i] == 0) {
+                    continue;
+                }
+                bandResults.add(new BandResult(bands.labels[i], (double) count[i] / totalCount,
+                        mean(sum[i], count[i]), variance(sum[i], sumSquares[i], count[i]),
+                        (double) failures[i] / count[i]));
+            }
+
+            return new ItemResult(itemId, totalCount, mean(totalSum, totalCount),
+                    variance(totalSum, totalSquares, totalCount),
+                    totalCount > 0 ? (double) totalFailures / totalCount : 0.0, bandResults, false);
+        }
+
+        private static double mean(long sum, long count) {
+            return count > 0 ? (double) sum / count : 0.0;
+        }
+
+        private static double variance(long sum, long squares, long count) {
+            if (count == 0) {
+                return 0.0;
+            }
+            double mean = (double) sum / count;
+            return Math.max((double) squares / count - mean * mean, 0.0);
+        }
+    }
+
+    public static class ItemResult {
+        private final String itemId;
+        private final long samples;
+        private final double mean;
+        private final double variance;
+        private final double failureRate;
+        private final List<BandResult> bands;
+        private final boolean cached;
+
+        private ItemResult(String itemId, long samples, double mean, double variance,
+                           double failureRate, List<BandResult> bands, boolean cached) {
+            this.itemId = itemId;
+            this.samples = samples;
+            this.mean = mean;
+            this.variance = variance;
+            this.failureRate = failureRate;
+            this.bands = bands;
+            this.cached = cached;
+        }
+
+        private ItemResult asCached() {
+            return new ItemResult(itemId, samples, mean, variance, failureRate, bands, true);
+        }
+
+        // Getters
+        public String getItemId() { return itemId; }
+        public long getSamples() { return samples; }
+        public double getMean() { return mean; }
+        public double getVariance() { return variance; }
+        public double getFailureRate() { return failureRate; }
+        public List<BandResult> getBands() { return bands; }
+        public boolean isCached() { return cached; }
+    }
+
+    public static class BandResult {
+        private final String label;
+        private final double share;
+        private final double mean;
+        private final double variance;
+        private final double failureRate;
+
+        private BandResult(String label, double share, double mean, double variance, double failureRate) {
+            this.label = label;
+            this.share = share;
+            this.mean = mean;
+            this.variance = variance;
+            this.failureRate = failureRate;
+        }
+
+        // Getters
+        public String getLabel() { return label; }
+        public double getShare() { return share; }
+        public double getMean() { return mean; }
+        public double getVariance() { return variance; }
+        public double getFailureRate() { return failureRate; }
+    }
+}
@@ -1,27 +1,135 @@
 package com.itemsmelter.managers;
 
 import com.itemsmelter.ItemSmelter;
+import com.itemsmelter.models.FurnaceKind;
 import com.itemsmelter.models.SmeltableItem;
-import org.bukkit.Bukkit;
+import com.itemsmelter.models.SoundProfile;
+import com.itemsmelter.scheduler.TaskScheduler;
+import com.itemsmelter.state.BlockKey;
+import com.itemsmelter.state.FurnaceState;
+import com.itemsmelter.state.FurnaceStateStore;
 import org.bukkit.Location;
 import org.bukkit.Material;
-import org.bukkit.block.BlastFurnace;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.Furnace;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.FurnaceInventory;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.meta.Damageable;
-import org.bukkit.scheduler.BukkitTask;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.random.RandomGenerator;
 
 public class SmeltingManager {
 
+    private static final long SWEEP_INTERVAL_TICKS = 1L;
+    // Table slots and furnaces the sweeper looks at per tick, however many are tracked
+    private static final int SWEEP_BUDGET = 512;
+    private static final double SOUND_RADIUS = 16.0;
+
     private final ItemSmelter plugin;
-    private final Map<Location, SmeltingProcess> activeProcesses;
+    private final FurnaceStateStore furnaceStates;
+    private final DurabilityReader durabilityReader;
+    private final ProcessPersistence processPersistence;
+    private final List<FurnaceState> sweepBuffer = new ArrayList<>();
+    private TaskScheduler.Task sweepTask;
 
     public SmeltingManager(ItemSmelter plugin) {
         this.plugin = plugin;
-        this.activeProcesses = new HashMap<>();
+        this.furnaceStates = new FurnaceStateStore();
+        this.durabilityReader = DurabilityReader.select(plugin);
+        plugin.getLogger().info("Using " + durabilityReader.getName() + " durability reader");
+        plugin.getMetricsManager().setDurabilityReader(durabilityReader.getName());
+        this.processPersistence = new ProcessPersistence(plugin, durabilityReader);
+        this.sweepTask = plugin.getTaskScheduler().runGlobalTimer(
+                this::sweep, SWEEP_INTERVAL_TICKS, SWEEP_INTERVAL_TICKS);
+    }
+
+    /**
+     * Drops settled states from the next bounded slice of the store and evicts
+     * furnaces whose block is gone without an event we could see.
+     */
+    private void sweep() {
+        furnaceStates.sweep(SWEEP_BUDGET, sweepBuffer);
+        TaskScheduler scheduler = plugin.getTaskScheduler();
+        // The store hands states out chunk by chunk, check each chunk in one go
+        int start = 0;
+        while (start < sweepBuffer.size()) {
+            FurnaceState first = sweepBuffer.get(start);
+            long chunk = chunkOf(first);
+            int end = start + 1;
+            while (end < sweepBuffer.size() && sweepBuffer.get(end).getWorldIndex() == first.getWorldIndex()
+                    && chunkOf(sweepBuffer.get(end)) == chunk) {
+                end++;
+            }
+
+            World world = furnaceStates.getWorld(first.getWorldIndex());
+            if (world != null) {
+                if (scheduler.isRegionThreaded()) {
+                    // Only the owning region may read the blocks, one task per chunk
+                    FurnaceState[] states = sweepBuffer.subList(start, end).toArray(new FurnaceState[0]);
+                    Location location = new Location(world, BlockKey.unpackX(first.getKey()),
+                            BlockKey.unpackY(first.getKey()), BlockKey.unpackZ(first.getKey()));
+                    scheduler.runAt(location, () -> {
+                        for (FurnaceState state : states) {
+                            evictIfGone(state, world);
+                        }
+                    });
+                } else {
+                    for (int i = start; i < end; i++) {
+                        evictIfGone(sweepBuffer.get(i), world);
+                    }
+                }
+            }
+            start = end;
+        }
+        sweepBuffer.clear();
+    }
+
+    private static long chunkOf(FurnaceState state) {
+        return FurnaceStateStore.chunkKey(BlockKey.unpackX(state.getKey()) >> 4, BlockKey.unpackZ(state.getKey()) >> 4);
+    }
+
+    private void evictIfGone(FurnaceState state, World world) {
+        long key = state.getKey();
+        int x = BlockKey.unpackX(key);
+        int y = BlockKey.unpackY(key);
+        int z = BlockKey.unpackZ(key);
+        // Live partitions belong to loaded chunks, skip the rare one caught mid unload
+        if (world.isChunkLoaded(x >> 4, z >> 4) && FurnaceKind.of(world.getBlockAt(x, y, z).getType()) == null) {
+            releaseFurnace(state);
+        }
+    }
+
+    /**
+     * Forgets a furnace whose block was broken, burnt or blown up.
+     */
+    public void releaseFurnace(Block block) {
+        FurnaceState state = furnaceStates.get(block);
+        if (state != null) {
+            releaseFurnace(state);
+        }
+    }
+
+    public void releaseFurnace(FurnaceState state) {
+        // Only drop what was seen: if another thread started a cook on the
+        // state in the meantime it stays tracked, the next sweep looks again
+        FurnaceState.Phase phase = state.getPhase();
+        SmeltingProcess process = state.getProcess();
+        if (furnaceStates.remove(state, current -> current.getPhase() == phase && current.getProcess() == process)) {
+            cancelSmelting(state);
+        }
+    }
+
+    public FurnaceStateStore getFurnaceStates() {
+        return furnaceStates;
+    }
+
+    public ProcessPersistence getProcessPersistence() {
+        return processPersistence;
     }
 
     public boolean canSmelt(ItemStack item) {
@@ -40,100 +148,250 @@ public class SmeltingManager {
         return plugin.getConfigManager().getSmeltableItem(item.getType());
     }
 
-    // added debug test 1.4.4
-     public int calculateOutputAmount(ItemStack item, SmeltableItem smeltableItem) {
-            if (!smeltableItem.isDurabilityBased()) {
-                int output = smeltableItem.calculateOutput(smeltableItem.getMaxDurability());
-                plugin.getLogger().info("Non-durability item: " + item.getType() + " -> " + output);
-                return output;
-            }
-
-            if (item.getItemMeta() instanceof Damageable) {
-                Damageable damageable = (Damageable) item.getItemMeta();
-                int damage = damageable.getDamage();
-                int currentDurability = smeltableItem.getMaxDurability() - damage;
-                int output = smeltableItem.calculateOutput(currentDurability);
+    public int calculateOutputAmount(ItemStack item, SmeltableItem smeltableItem, Location location, long tick) {
+        return rollOutputs(item, smeltableItem, 1, location, tick)[0];
+    }
 
-                plugin.getLogger().info("Durability item: " + item.getType() +
-                        " | Damage: " + damage +
-                        " | Current: " + currentDurability + "/" + smeltableItem.getMaxDurability() +
-                        " | Output: " + output);
+    /**
+     * Rolls the output of count items from the same stack in one pass.
+     */
+    public int[] rollOutputs(ItemStack item, SmeltableItem smeltableItem, int count, Location location, long tick) {
+        MetricsManager metrics = plugin.getMetricsManager();
+        long start = metrics.start();
+        long allocationStart = metrics.startAllocation();
+        int[] outputs = rollOutputs(item, smeltableItem, count, plugin.getConfigManager().getRollSource().forRoll(location, tick));
+        metrics.recordAllocation(MetricsManager.Timer.CALCULATE_OUTPUT, allocationStart);
+        metrics.record(MetricsManager.Timer.CALCULATE_OUTPUT, start);
+        return outputs;
+    }
 
-                return output;
+    private int[] rollOutputs(ItemStack item, SmeltableItem smeltableItem, int count, RandomGenerator random) {
+        int[] outputs = new int[count];
+        if (!smeltableItem.isDurabilityBased()) {
+            for (int i = 0; i < count; i++) {
+                outputs[i] = smeltableItem.calculateOutput(smeltableItem.getMaxDurability(), random);
             }
-
-            return smeltableItem.calculateOutput(smeltableItem.getMaxDurability());
+            return outputs;
         }
-        //original code without debug
-/*    public int calculateOutputAmount(ItemStack item, SmeltableItem smeltableItem) {
-        if (!smeltableItem.isDurabilityBased()) {
-            return smeltableItem.calculateOutput(smeltableItem.getMaxDurability());
+
+        // Items in one stack always share their damage
+        int damage = durabilityReader.getDamage(item);
+        int currentDurability = smeltableItem.getMaxDurability() - damage;
+        for (int i = 0; i < count; i++) {
+            outputs[i] = smeltableItem.calculateOutput(currentDurability, random);
         }
 
-        if (item.getItemMeta() instanceof Damageable) {
-            Damageable damageable = (Damageable) item.getItemMeta();
-            int damage = damageable.getDamage();
-            int currentDurability = smeltableItem.getMaxDurability() - damage;
-            return smeltableItem.calculateOutput(currentDurability);
+        TraceManager trace = plugin.getTraceManager();
+        if (trace.shouldTrace(TraceManager.Level.DEBUG, smeltableItem, null)) {
+            trace.record(TraceManager.Level.DEBUG, "Durability item: " + item.getType() +
+                    " | Damage: " + damage +
+                    " | Current: " + currentDurability + "/" + smeltableItem.getMaxDurability() +
+                    " | Output: " + outputs[0] + (count > 1 ? " (x" + count + ")" : ""));
         }
 
-        return smeltableItem.calculateOutput(smeltableItem.getMaxDurability());
-    }*/
+        return outputs;
+    }
 
-    public void startSmelting(Location furnaceLocation, ItemStack source, SmeltableItem smeltableItem, UUID playerId) {
+    /**
+     * Starts a process for the furnace and rolls its outcome once. An existing
+     * process for the same item type is kept instead of rolling again.
+     */
+    public SmeltingProcess startSmelting(FurnaceState state, Location furnaceLocation, ItemStack source,
+                                         SmeltableItem smeltableItem, UUID playerId, long tick) {
         // Prevent duplicate processes
-        if (activeProcesses.containsKey(furnaceLocation)) {
-            return;
+        SmeltingProcess existing = state.getProcess();
+        if (existing != null) {
+            if (existing.getSourceItem().getType() == source.getType()) {
+                return existing;
+            }
+            cancelSmelting(state);
         }
 
-        int outputAmount = calculateOutputAmount(source, smeltableItem);
+        int batchSize = Math.max(1, Math.min(smeltableItem.getBatchSize(), source.getAmount()));
+        int[] batchOutputs = rollOutputs(source, smeltableItem, batchSize, furnaceLocation, tick);
+        int outputAmount = 0;
+        for (int output : batchOutputs) {
+            outputAmount += output;
+        }
         double cookTimeMultiplier = smeltableItem.getSmeltTimeMultiplier();
 
         // Base blast furnace cook time is 100 ticks (5 seconds)
-        int cookTimeTicks = (int) (100 * cookTimeMultiplier);
+        int cookTimeTicks = scaleCookTime((int) (100 * cookTimeMultiplier), batchSize);
 
         SmeltingProcess process = new SmeltingProcess(
                 furnaceLocation,
                 source.clone(),
                 smeltableItem,
                 outputAmount,
+                batchOutputs,
                 cookTimeTicks,
-                playerId
+                playerId,
+                tick,
+                plugin.getConfigManager().getConfigHash(),
+                processPersistence.fingerprint(source)
         );
 
-        activeProcesses.put(furnaceLocation, process);
+        state.startSmelting(process);
+        return process;
     }
 
-    public void cancelSmelting(Location furnaceLocation) {
-        SmeltingProcess process = activeProcesses.remove(furnaceLocation);
+    /**
+     * Restores the process stored on the furnace, if it still applies to the
+     * item in the input slot. Called the first time a furnace is touched after
+     * a reload or chunk load.
+     */
+    public SmeltingProcess rehydrate(FurnaceState state, Furnace furnace, ItemStack source, SmeltableItem smeltableItem) {
+        SmeltingProcess process = processPersistence.read(furnace, source, smeltableItem);
+        if (process != null) {
+            state.startSmelting(process);
+        }
+        return process;
+    }
+
+    /**
+     * Stores the process of a furnace on the furnace itself. Furnaces in
+     * unloaded chunks already stored theirs when the chunk unloaded.
+     */
+    public void persistProcess(FurnaceState state) {
+        SmeltingProcess process = state.getProcess();
+        if (process == null) {
+            return;
+        }
+
+        Location location = process.getFurnaceLocation();
+        if (!location.getWorld().isChunkLoaded(location.getBlockX() >> 4, location.getBlockZ() >> 4)) {
+            return;
+        }
+
+        int[] data = processPersistence.encode(process);
+        TaskScheduler scheduler = plugin.getTaskScheduler();
+        if (!scheduler.isRegionThreaded()) {
+            processPersistence.write(location, data);
+        } else if (plugin.isEnabled()) {
+            // Only the owning region may write the block, nothing can be scheduled once disabled
+            scheduler.runAt(location, () -> processPersistence.write(location, data));
+        }
+    }
+
+    /**
+     * Stores the process of a furnace right away. Must run on the thread owning
+     * the block, such as the handler of its chunk unloading, where a deferred
+     * write would land after the chunk is gone.
+     */
+    public void writeProcess(FurnaceState state) {
+        SmeltingProcess process = state.getProcess();
+        if (process != null) {
+            processPersistence.write(process.getFurnaceLocation(), processPersistence.encode(process));
+        }
+    }
+
+    /**
+     * Output for a finished cook. Uses the outcome rolled at the start and only
+     * rolls here if the furnace has no process for this item.
+     */
+    public int resolveOutputAmount(FurnaceState state, ItemStack source, SmeltableItem smeltableItem,
+                                   Location location, long tick) {
+        SmeltingProcess process = state != null ? state.getProcess() : null;
+        if (process != null && process.getSourceItem().getType() == source.getType()) {
+            return process.getOutputAmount();
+        }
+        return calculateOutputAmount(source, smeltableItem, location, tick);
+    }
+
+    /**
+     * Takes the rest of a batch from the input slot of the furnace and returns
+     * the output of every item smelted this cycle. The furnace consumes the first
+     * item itself, extra items are only taken while their output still fits the
+     * result slot.
+     */
+    public int consumeBatch(SmeltingProcess process, FurnaceInventory inventory) {
+        int[] outputs = process.getBatchOutputs();
+        Material outputMaterial = process.getSmeltableItem().getOutputMaterial();
+
+        ItemStack result = inventory.getResult();
+        int space;
+        if (result == null || result.getType() == Material.AIR) {
+            space = outputMaterial.getMaxStackSize();
+        } else if (result.getType() == outputMaterial) {
+            space = result.getMaxStackSize() - result.getAmount();
+        } else {
+            space = 0;
+        }
+
+        ItemStack smelting = inventory.getSmelting();
+        int available = smelting != null && smelting.getType() == process.getSourceItem().getType()
+                ? smelting.getAmount() : 1;
+        int total = outputs[0];
+        int count = 1;
+        while (count < outputs.length && count < available && total + outputs[count] <= space) {
+            total += outputs[count];
+            count++;
+        }
+
+        // A batch that yields nothing goes through the failure path one item at a time
+        if (total > 0 && count > 1) {
+            smelting.setAmount(available - (count - 1));
+            inventory.setSmelting(smelting);
+        }
+        return total;
+    }
+
+    /**
+     * Cook time for a batch, grows with the square root of the batch size.
+     */
+    public static int scaleCookTime(int cookTimeTicks, int batchSize) {
+        if (batchSize <= 1) {
+            return cookTimeTicks;
+        }
+        return (int) Math.round(cookTimeTicks * Math.sqrt(batchSize));
+    }
+
+    public void cancelSmelting(FurnaceState state) {
+        SmeltingProcess process = state.getProcess();
         if (process != null && process.task != null) {
             process.task.cancel();
         }
+        state.cancelSmelting();
     }
 
-    public boolean isActivelySmelting(Location furnaceLocation) {
-        return activeProcesses.containsKey(furnaceLocation);
+    public boolean isActivelySmelting(FurnaceState state) {
+        return state != null && state.getProcess() != null;
     }
 
-    public SmeltingProcess getProcess(Location furnaceLocation) {
-        return activeProcesses.get(furnaceLocation);
+    public void completeSmelting(FurnaceState state, long tick) {
+        state.completeSmelting(tick);
     }
 
-    public void completeSmelting(Location furnaceLocation) {
-        activeProcesses.remove(furnaceLocation);
-    }
+    public void playSound(Location location, SoundProfile profile, FurnaceState state, long tick) {
+        // One emission per furnace per tick
+        if (profile == null || !state.claimSound(tick)) {
+            return;
+        }
 
-    public void reload() {
-        // Cancel all active processes
-        for (SmeltingProcess process : activeProcesses.values()) {
-            if (process.task != null) {
-                process.task.cancel();
+        // Only look at entities near the furnace instead of every online player
+        for (Entity entity : location.getWorld().getNearbyEntities(location, SOUND_RADIUS, SOUND_RADIUS, SOUND_RADIUS,
+                entity -> entity instanceof Player)) {
+            Player player = (Player) entity;
+            if (player.getLocation().distanceSquared(location) <= SOUND_RADIUS * SOUND_RADIUS &&
+                    plugin.getPlayerSettingsManager().isSoundEnabled(player)) {
+                player.playSound(location, profile.getSound(), profile.getVolume(), profile.getPitch());
             }
         }
-        activeProcesses.clear();
+    }
+
+    public void reload() {
+        // Keep active processes on their furnaces, then cancel them. Parked
+        // processes stay untouched, their chunks cannot be written to.
+        furnaceStates.forEachLive(this::persistProcess);
+        furnaceStates.forEachLive(this::cancelSmelting);
+        furnaceStates.removeIdle();
     }
 
     public void cleanup() {
+        if (sweepTask != null) {
+            sweepTask.cancel();
+            sweepTask = null;
+        }
         reload();
     }
 
@@ -142,20 +400,29 @@ public class SmeltingManager {
         private final ItemStack sourceItem;
         private final SmeltableItem smeltableItem;
         private final int outputAmount;
+        private final int[] batchOutputs;
         private final int cookTimeTicks;
         private final UUID playerId;
-        private BukkitTask task;
+        private final long startTick;
+        private final int configHash;
+        private final int sourceFingerprint;
+        private TaskScheduler.Task task;
         private int currentCookTime;
 
         public SmeltingProcess(Location furnaceLocation, ItemStack sourceItem,
-                               SmeltableItem smeltableItem, int outputAmount,
-                               int cookTimeTicks, UUID playerId) {
+                               SmeltableItem smeltableItem, int outputAmount, int[] batchOutputs,
+                               int cookTimeTicks, UUID playerId, long startTick, int configHash,
+                               int sourceFingerprint) {
             this.furnaceLocation = furnaceLocation;
             this.sourceItem = sourceItem;
             this.smeltableItem = smeltableItem;
             this.outputAmount = outputAmount;
+            this.batchOutputs = batchOutputs;
             this.cookTimeTicks = cookTimeTicks;
             this.playerId = playerId;
+            this.startTick = startTick;
+            this.configHash = configHash;
+            this.sourceFingerprint = sourceFingerprint;
             this.currentCookTime = 0;
         }
 
@@ -164,12 +431,18 @@ public class SmeltingManager {
         public ItemStack getSourceItem() { return sourceItem; }
         public SmeltableItem getSmeltableItem() { return smeltableItem; }
         public int getOutputAmount() { return outputAmount; }
+        public int[] getBatchOutputs() { return batchOutputs; }
+        public int getBatchSize() { return batchOutputs.length; }
         public int getCookTimeTicks() { return cookTimeTicks; }
         public UUID getPlayerId() { return playerId; }
-        public BukkitTask getTask() { return task; }
+        public long getStartTick() { return startTick; }
+        public int getConfigHash() { return configHash; }
+        public int getSourceFingerprint() { return sourceFingerprint; }
+        public boolean isDoomed() { return outputAmount <= 0; }
+        public TaskScheduler.Task getTask() { return task; }
         public int getCurrentCookTime() { return currentCookTime; }
 
-        public void setTask(BukkitTask task) { this.task = task; }
+        public void setTask(TaskScheduler.Task task) { this.task = task; }
         public void incrementCookTime() { this.currentCookTime++; }
     }
 }
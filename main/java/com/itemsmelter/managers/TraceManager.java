@@ -0,0 +1,177 @@
+package com.itemsmelter.managers;
+
+import com.itemsmelter.ItemSmelter;
+import com.itemsmelter.config.RecipeSnapshot;
+import com.itemsmelter.models.SmeltableItem;
+import org.bukkit.World;
+
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Debug trace written to an in-memory ring buffer instead of the console.
+ * Callers guard message building with {@link #shouldTrace}, so nothing is
+ * formatted while tracing is off.
+ */
+public class TraceManager {
+
+    public enum Level {
+        INFO,
+        DEBUG
+    }
+
+    /**
+     * Filter settings, replaced as a whole on load so region threads never see
+     * a half-loaded set.
+     */
+    private static final class Settings {
+        private static final Settings OFF = new Settings(-1, 1.0, Collections.emptyMap(), Collections.emptyMap());
+
+        // Highest level ordinal that gets recorded, -1 when tracing is off
+        private final int threshold;
+        private final double sampleRate;
+        private final Map<String, Double> itemRates;
+        private final Map<String, Double> worldRates;
+
+        private Settings(int threshold, double sampleRate, Map<String, Double> itemRates,
+                         Map<String, Double> worldRates) {
+            this.threshold = threshold;
+            this.sampleRate = sampleRate;
+            this.itemRates = itemRates;
+            this.worldRates = worldRates;
+        }
+    }
+
+    private final ItemSmelter plugin;
+    private volatile Settings settings = Settings.OFF;
+    private Entry[] buffer = new Entry[0];
+    private int next;
+    private int count;
+
+    public TraceManager(ItemSmelter plugin) {
+        this.plugin = plugin;
+    }
+
+    public void loadSettings() {
+        RecipeSnapshot config = plugin.getConfigManager().getSnapshot();
+        if (!config.isSection("trace")) {
+            settings = Settings.OFF;
+            return;
+        }
+
+        int threshold;
+        String levelStr = config.getString("trace.level", "OFF").toUpperCase();
+        if (levelStr.equals("OFF")) {
+            threshold = -1;
+        } else {
+            try {
+                threshold = Level.valueOf(levelStr).ordinal();
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("Invalid trace level '" + levelStr + "', tracing disabled");
+                threshold = -1;
+            }
+        }
+
+        settings = new Settings(threshold, config.getDouble("trace.sample_rate", 1.0),
+                loadRates(config, "trace.items"), loadRates(config, "trace.worlds"));
+
+        int size = Math.max(config.getInt("trace.buffer_size", 500), 1);
+        synchronized (this) {
+            if (buffer.length != size) {
+                buffer = new Entry[size];
+                next = 0;
+                count = 0;
+            }
+        }
+    }
+
+    private Map<String, Double> loadRates(RecipeSnapshot config, String path) {
+        Set<String> keys = config.getKeys(path);
+        if (keys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Double> rates = new HashMap<>();
+        for (String key : keys) {
+            rates.put(key, config.getDouble(path + "." + key, 1.0));
+        }
+        return Collections.unmodifiableMap(rates);
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.ordinal() <= settings.threshold;
+    }
+
+    /**
+     * Decides whether an event should be traced: the level must be enabled and
+     * the event must pass the per-item and per-world sampling rates.
+     * Either context may be null when it is not known at the call site.
+     */
+    public boolean shouldTrace(Level level, SmeltableItem item, World world) {
+        Settings settings = this.settings;
+        if (level.ordinal() > settings.threshold) {
+            return false;
+        }
+
+        double rate = settings.sampleRate;
+        if (item != null) {
+            rate = settings.itemRates.getOrDefault(item.getId(), rate);
+        }
+        if (world != null) {
+            rate *= settings.worldRates.getOrDefault(world.getName(), 1.0);
+        }
+
+        return rate >= 1.0 || (rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    public synchronized void record(Level level, String message) {
+        if (buffer.length == 0) {
+            return;
+        }
+        buffer[next] = new Entry(System.currentTimeMillis(), level, message);
+        next = (next + 1) % buffer.length;
+        if (count < buffer.length) {
+            count++;
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} of the most recent entries, oldest first.
+     */
+    public synchronized List<Entry> getRecent(int limit) {
+        int size = Math.min(limit, count);
+        List<Entry> entries = new ArrayList<>(size);
+        int start = next - size;
+        for (int i = 0; i < size; i++) {
+            entries.add(buffer[Math.floorMod(start + i, buffer.length)]);
+        }
+        return entries;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(buffer, null);
+        next = 0;
+        count = 0;
+    }
+
+    public static class Entry {
+        private final long time;
+        private final Level level;
+        private final String message;
+
+        public Entry(long time, Level level, String message) {
+            this.time = time;
+            this.level = level;
+            this.message = message;
+        }
+
+        public String format() {
+            return new SimpleDateFormat("HH:mm:ss.SSS").format(new Date(time)) + " " + level + " " + message;
+        }
+
+        // Getters
+        public long getTime() { return time; }
+        public Level getLevel() { return level; }
+        public String getMessage() { return message; }
+    }
+}
@@ -0,0 +1,81 @@
+package com.itemsmelter.managers;
+
+import com.itemsmelter.ItemSmelter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind saving. Changes only mark the data dirty, a background task
+ * then writes everything changed so far in one go, so a burst of edits costs
+ * a single write.
+ */
+public class WriteBehind {
+
+    /**
+     * Writes the current in-memory state, called on the writer thread.
+     */
+    public interface Writer {
+        void write() throws IOException;
+    }
+
+    private final ItemSmelter plugin;
+    private final String name;
+    private final Writer writer;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    public WriteBehind(ItemSmelter plugin, String name, Writer writer) {
+        this.plugin = plugin;
+        this.name = name;
+        this.writer = writer;
+    }
+
+    /**
+     * Schedules a write unless one is already waiting, which will pick up this
+     * change as well.
+     */
+    public void markDirty() {
+        if (!dirty.getAndSet(true)) {
+            plugin.getTaskScheduler().runAsync(this::flush);
+        }
+    }
+
+    /**
+     * Writes pending changes now. Used by the background task and for the final
+     * save on disable.
+     */
+    public synchronized void flush() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+
+        try {
+            writer.write();
+        } catch (IOException e) {
+            // Keep the changes pending, the next edit or the final flush tries again
+            dirty.set(true);
+            plugin.getLogger().warning("Could not save " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes to a temp file first and moves it over the old one, a crash
+     * mid-write never leaves a truncated file.
+     */
+    public static void writeAtomically(File file, String content) throws IOException {
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(file.getName() + ".tmp");
+        Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -1,11 +1,9 @@
-// added debugger 1.4.5
 package com.itemsmelter.models;
 
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 public class DurabilityRange {
 
-    private static final Random RANDOM = new Random();
     private final int min;
     private final int max;
 
@@ -14,44 +12,14 @@ public class DurabilityRange {
         this.max = max;
     }
 
-    public int getRandom() {
+    public int getRandom(RandomGenerator random) {
         if (min == max) {
             return min;
         }
 
-        int result = RANDOM.nextInt(max - min + 1) + min;
-
-        System.out.println("[DurabilityRange] min=" + min + " max=" + max + " -> result=" + result);
-
-        return result;
+        return random.nextInt(max - min + 1) + min;
     }
 
     public int getMin() { return min; }
     public int getMax() { return max; }
 }
-/* original code
-package com.itemsmelter.models;
-
-import java.util.Random;
-
-public class DurabilityRange {
-
-    private static final Random RANDOM = new Random();
-    private final int min;
-    private final int max;
-
-    public DurabilityRange(int min, int max) {
-        this.min = min;
-        this.max = max;
-    }
-
-    public int getRandom() {
-        if (min == max) {
-            return min;
-        }
-        return RANDOM.nextInt(max - min + 1) + min;
-    }
-
-    public int getMin() { return min; }
-    public int getMax() { return max; }
-}*/
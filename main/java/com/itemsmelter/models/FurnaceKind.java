@@ -0,0 +1,48 @@
+package com.itemsmelter.models;
+
+import org.bukkit.Material;
+import org.bukkit.event.inventory.InventoryType;
+
+/**
+ * Furnace type resolved from the block material or inventory type, so event
+ * handlers never need a block state snapshot just to run instanceof checks.
+ */
+public enum FurnaceKind {
+    FURNACE,
+    BLAST_FURNACE,
+    SMOKER;
+
+    public static FurnaceKind of(Material material) {
+        switch (material) {
+            case FURNACE:
+                return FURNACE;
+            case BLAST_FURNACE:
+                return BLAST_FURNACE;
+            case SMOKER:
+                return SMOKER;
+            default:
+                return null;
+        }
+    }
+
+    public static FurnaceKind of(InventoryType type) {
+        switch (type) {
+            case FURNACE:
+                return FURNACE;
+            case BLAST_FURNACE:
+                return BLAST_FURNACE;
+            case SMOKER:
+                return SMOKER;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Whether an item configured with the given smelt_in value may be cooked here.
+     * Blast furnace items need a blast furnace, everything else is refused only by one.
+     */
+    public boolean accepts(FurnaceKind requiredFurnace) {
+        return (requiredFurnace == BLAST_FURNACE) == (this == BLAST_FURNACE);
+    }
+}
@@ -0,0 +1,31 @@
+package com.itemsmelter.models;
+
+/**
+ * Per-player settings. Immutable, every change creates a new instance so the
+ * copy waiting to be written never changes under the writer.
+ */
+public final class PlayerPreferences {
+
+    public static final PlayerPreferences DEFAULT = new PlayerPreferences(true, null);
+
+    private final boolean soundsEnabled;
+    // Locale id, or null to follow the server default
+    private final String locale;
+
+    public PlayerPreferences(boolean soundsEnabled, String locale) {
+        this.soundsEnabled = soundsEnabled;
+        this.locale = locale;
+    }
+
+    public PlayerPreferences withSoundsEnabled(boolean soundsEnabled) {
+        return new PlayerPreferences(soundsEnabled, locale);
+    }
+
+    public PlayerPreferences withLocale(String locale) {
+        return new PlayerPreferences(soundsEnabled, locale);
+    }
+
+    // Getters
+    public boolean isSoundsEnabled() { return soundsEnabled; }
+    public String getLocale() { return locale; }
+}
@@ -0,0 +1,90 @@
+package com.itemsmelter.models;
+
+import com.itemsmelter.state.BlockKey;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Where yield rolls get their randomness from.
+ */
+public abstract class RollSource {
+
+    public enum Mode {
+        FAST,
+        DETERMINISTIC
+    }
+
+    /**
+     * Generator for one roll made by the furnace at the given location and world tick.
+     */
+    public abstract RandomGenerator forRoll(Location location, long tick);
+
+    public abstract Mode getMode();
+
+    public static RollSource of(Mode mode, long seed) {
+        return mode == Mode.DETERMINISTIC ? new Deterministic(seed) : new Fast();
+    }
+
+    /**
+     * Per-thread generator, nothing shared between threads.
+     */
+    public static class Fast extends RollSource {
+
+        @Override
+        public RandomGenerator forRoll(Location location, long tick) {
+            return ThreadLocalRandom.current();
+        }
+
+        @Override
+        public Mode getMode() {
+            return Mode.FAST;
+        }
+    }
+
+    /**
+     * Seeds every roll from the configured seed, the furnace position and the
+     * tick, so the same roll can be replayed later.
+     */
+    public static class Deterministic extends RollSource {
+
+        private final long seed;
+
+        public Deterministic(long seed) {
+            this.seed = seed;
+        }
+
+        @Override
+        public RandomGenerator forRoll(Location location, long tick) {
+            return new SplittableRandom(seedFor(location.getWorld(), location.getBlockX(),
+                    location.getBlockY(), location.getBlockZ(), tick));
+        }
+
+        public long seedFor(World world, int x, int y, int z, long tick) {
+            long h = seed;
+            if (world != null) {
+                UUID uid = world.getUID();
+                h = mix(h ^ uid.getMostSignificantBits());
+                h = mix(h ^ uid.getLeastSignificantBits());
+            }
+            h = mix(h ^ BlockKey.pack(x, y, z));
+            return mix(h ^ tick);
+        }
+
+        @Override
+        public Mode getMode() {
+            return Mode.DETERMINISTIC;
+        }
+
+        // SplitMix64 finalizer
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
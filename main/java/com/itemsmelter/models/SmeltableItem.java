@@ -1,24 +1,35 @@
 package com.itemsmelter.models;
 
 import org.bukkit.Material;
+
+import java.util.Collections;
 import java.util.Map;
+import java.util.random.RandomGenerator;
 
 public class SmeltableItem {
 
+    private static final DurabilityRange NO_OUTPUT = new DurabilityRange(0, 0);
+
     private final String id;
     private final Material material;
     private final boolean enabled;
-    private final String smeltIn;
+    private final FurnaceKind smeltIn;
     private final boolean ignoreSticks;
     private final boolean durabilityBased;
     private final Material outputMaterial;
     private final int maxDurability;
     private final double smeltTimeMultiplier;
+    private final int batchSize;
     private final Map<Integer, DurabilityRange> durabilityRanges;
 
-    public SmeltableItem(String id, Material material, boolean enabled, String smeltIn,
+    // Ranges compiled at load time: index is the current durability
+    private final int[] thresholds;
+    private final DurabilityRange[] rangeByDurability;
+    private final DurabilityRange fixedRange;
+
+    public SmeltableItem(String id, Material material, boolean enabled, FurnaceKind smeltIn,
                          boolean ignoreSticks, boolean durabilityBased, Material outputMaterial,
-                         int maxDurability, double smeltTimeMultiplier,
+                         int maxDurability, double smeltTimeMultiplier, int batchSize,
                          Map<Integer, DurabilityRange> durabilityRanges) {
         this.id = id;
         this.material = material;
@@ -29,46 +40,82 @@ public class SmeltableItem {
         this.outputMaterial = outputMaterial;
         this.maxDurability = maxDurability;
         this.smeltTimeMultiplier = smeltTimeMultiplier;
-        this.durabilityRanges = durabilityRanges;
+        this.batchSize = batchSize;
+        this.durabilityRanges = Collections.unmodifiableMap(durabilityRanges);
+
+        this.thresholds = new int[durabilityRanges.size()];
+        int i = 0;
+        for (int threshold : durabilityRanges.keySet()) {
+            thresholds[i++] = threshold;
+        }
+
+        // For items like minecarts that don't use durability
+        DurabilityRange fullRange = durabilityRanges.get(100);
+        this.fixedRange = fullRange != null ? fullRange : new DurabilityRange(1, 1);
+        this.rangeByDurability = compileRanges();
     }
 
-    public int calculateOutput(int currentDurability) {
-        if (!durabilityBased) {
-            // For items like minecarts that don't use durability
-            DurabilityRange range = durabilityRanges.get(100);
-            if (range != null) {
-                return range.getRandom();
-            }
-            return 1;
+    private DurabilityRange[] compileRanges() {
+        int maxThreshold = 0;
+        for (int threshold : thresholds) {
+            maxThreshold = Math.max(maxThreshold, threshold);
         }
 
-        double durabilityPercent = ((double) currentDurability / maxDurability) * 100.0;
+        // Extend past max durability until the highest threshold is reached, so
+        // clamping larger durability values to the last entry stays exact
+        int limit = Math.max(maxDurability, 1);
+        while (maxDurability >= 0 && durabilityPercent(limit) < maxThreshold) {
+            limit++;
+        }
 
+        DurabilityRange[] table = new DurabilityRange[limit + 1];
+        for (int durability = 0; durability <= limit; durability++) {
+            table[durability] = resolveRange(durabilityPercent(durability));
+        }
+        return table;
+    }
+
+    private double durabilityPercent(int currentDurability) {
+        return ((double) currentDurability / maxDurability) * 100.0;
+    }
+
+    private DurabilityRange resolveRange(double durabilityPercent) {
         // Find the appropriate range
         int applicableThreshold = 0;
-        for (int threshold : durabilityRanges.keySet()) {
+        for (int threshold : thresholds) {
             if (durabilityPercent >= threshold && threshold > applicableThreshold) {
                 applicableThreshold = threshold;
             }
         }
 
         DurabilityRange range = durabilityRanges.get(applicableThreshold);
-        if (range == null) {
-            return 0;
+        return range != null ? range : NO_OUTPUT;
+    }
+
+    public DurabilityRange getRange(int currentDurability) {
+        if (!durabilityBased) {
+            return fixedRange;
         }
 
-        return range.getRandom();
+        // Durability below zero resolves like zero, above the table like its last entry
+        int index = Math.min(Math.max(currentDurability, 0), rangeByDurability.length - 1);
+        return rangeByDurability[index];
+    }
+
+    public int calculateOutput(int currentDurability, RandomGenerator random) {
+        return getRange(currentDurability).getRandom(random);
     }
 
     // Getters
     public String getId() { return id; }
     public Material getMaterial() { return material; }
     public boolean isEnabled() { return enabled; }
-    public String getSmeltIn() { return smeltIn; }
+    public FurnaceKind getSmeltIn() { return smeltIn; }
     public boolean shouldIgnoreSticks() { return ignoreSticks; }
     public boolean isDurabilityBased() { return durabilityBased; }
     public Material getOutputMaterial() { return outputMaterial; }
     public int getMaxDurability() { return maxDurability; }
     public double getSmeltTimeMultiplier() { return smeltTimeMultiplier; }
+    public int getBatchSize() { return batchSize; }
     public Map<Integer, DurabilityRange> getDurabilityRanges() { return durabilityRanges; }
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.itemsmelter.models;
+
+import org.bukkit.Sound;
+
+/**
+ * A sound resolved from config once per reload.
+ */
+public class SoundProfile {
+
+    private final Sound sound;
+    private final float volume;
+    private final float pitch;
+
+    public SoundProfile(Sound sound, float volume, float pitch) {
+        this.sound = sound;
+        this.volume = volume;
+        this.pitch = pitch;
+    }
+
+    // Getters
+    public Sound getSound() { return sound; }
+    public float getVolume() { return volume; }
+    public float getPitch() { return pitch; }
+}
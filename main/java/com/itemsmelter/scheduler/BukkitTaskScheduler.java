@@ -0,0 +1,46 @@
+package com.itemsmelter.scheduler;
+
+import com.itemsmelter.ItemSmelter;
+import org.bukkit.Location;
+
+/**
+ * Classic single main thread scheduler.
+ */
+public class BukkitTaskScheduler extends TaskScheduler {
+
+    private final ItemSmelter plugin;
+
+    public BukkitTaskScheduler(ItemSmelter plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public Task runAt(Location location, Runnable task) {
+        return runGlobal(task);
+    }
+
+    @Override
+    public Task runAtTimer(Location location, Runnable task, long delayTicks, long periodTicks) {
+        return runGlobalTimer(task, delayTicks, periodTicks);
+    }
+
+    @Override
+    public Task runGlobal(Runnable task) {
+        return plugin.getServer().getScheduler().runTask(plugin, task)::cancel;
+    }
+
+    @Override
+    public Task runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        return plugin.getServer().getScheduler().runTaskTimer(plugin, task, delayTicks, periodTicks)::cancel;
+    }
+
+    @Override
+    public Task runAsync(Runnable task) {
+        return plugin.getServer().getScheduler().runTaskAsynchronously(plugin, task)::cancel;
+    }
+
+    @Override
+    public boolean isRegionThreaded() {
+        return false;
+    }
+}
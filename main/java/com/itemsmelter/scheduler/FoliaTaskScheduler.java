@@ -0,0 +1,125 @@
+package com.itemsmelter.scheduler;
+
+import com.itemsmelter.ItemSmelter;
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.Consumer;
+
+/**
+ * Scheduler for region-threaded servers. The region, global and async schedulers
+ * are not part of the Bukkit API, so they are resolved through reflection once.
+ */
+public class FoliaTaskScheduler extends TaskScheduler {
+
+    private static final String PACKAGE = "io.papermc.paper.threadedregions.scheduler.";
+
+    private final ItemSmelter plugin;
+    private final Object regionScheduler;
+    private final Object globalScheduler;
+    private final Object asyncScheduler;
+    private final Method regionRun;
+    private final Method regionRunAtFixedRate;
+    private final Method globalRun;
+    private final Method globalRunAtFixedRate;
+    private final Method asyncRunNow;
+    private final Method taskCancel;
+
+    FoliaTaskScheduler(ItemSmelter plugin) throws ReflectiveOperationException {
+        this.plugin = plugin;
+        Server server = plugin.getServer();
+
+        Class<?> regionClass = Class.forName(PACKAGE + "RegionScheduler");
+        Class<?> globalClass = Class.forName(PACKAGE + "GlobalRegionScheduler");
+        Class<?> asyncClass = Class.forName(PACKAGE + "AsyncScheduler");
+        Class<?> taskClass = Class.forName(PACKAGE + "ScheduledTask");
+
+        this.regionScheduler = Server.class.getMethod("getRegionScheduler").invoke(server);
+        this.globalScheduler = Server.class.getMethod("getGlobalRegionScheduler").invoke(server);
+        this.asyncScheduler = Server.class.getMethod("getAsyncScheduler").invoke(server);
+
+        this.regionRun = regionClass.getMethod("run", Plugin.class, Location.class, Consumer.class);
+        this.regionRunAtFixedRate = regionClass.getMethod("runAtFixedRate", Plugin.class, Location.class,
+                Consumer.class, long.class, long.class);
+        this.globalRun = globalClass.getMethod("run", Plugin.class, Consumer.class);
+        this.globalRunAtFixedRate = globalClass.getMethod("runAtFixedRate", Plugin.class, Consumer.class,
+                long.class, long.class);
+        this.asyncRunNow = asyncClass.getMethod("runNow", Plugin.class, Consumer.class);
+        this.taskCancel = taskClass.getMethod("cancel");
+    }
+
+    static boolean isSupported() {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Task runAt(Location location, Runnable task) {
+        return schedule(regionScheduler, regionRun, plugin, location, consumer(task));
+    }
+
+    @Override
+    public Task runAtTimer(Location location, Runnable task, long delayTicks, long periodTicks) {
+        // Region schedulers reject delays below one tick
+        return schedule(regionScheduler, regionRunAtFixedRate, plugin, location, consumer(task),
+                Math.max(delayTicks, 1L), Math.max(periodTicks, 1L));
+    }
+
+    @Override
+    public Task runGlobal(Runnable task) {
+        return schedule(globalScheduler, globalRun, plugin, consumer(task));
+    }
+
+    @Override
+    public Task runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        return schedule(globalScheduler, globalRunAtFixedRate, plugin, consumer(task),
+                Math.max(delayTicks, 1L), Math.max(periodTicks, 1L));
+    }
+
+    @Override
+    public Task runAsync(Runnable task) {
+        return schedule(asyncScheduler, asyncRunNow, plugin, consumer(task));
+    }
+
+    @Override
+    public boolean isRegionThreaded() {
+        return true;
+    }
+
+    private static Consumer<Object> consumer(Runnable task) {
+        return scheduledTask -> task.run();
+    }
+
+    private Task schedule(Object scheduler, Method method, Object... args) {
+        try {
+            Object scheduled = method.invoke(scheduler, args);
+            return () -> cancel(scheduled);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not schedule task: " + e.getMessage(), e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Could not schedule task: " + cause, cause);
+        }
+    }
+
+    private void cancel(Object scheduled) {
+        if (scheduled == null) {
+            return;
+        }
+        try {
+            taskCancel.invoke(scheduled);
+        } catch (ReflectiveOperationException e) {
+            plugin.getLogger().warning("Could not cancel task: " + e.getMessage());
+        }
+    }
+}
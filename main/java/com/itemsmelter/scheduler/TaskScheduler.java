@@ -0,0 +1,46 @@
+package com.itemsmelter.scheduler;
+
+import com.itemsmelter.ItemSmelter;
+import org.bukkit.Location;
+
+/**
+ * Schedules plugin work on the right thread. Classic servers run everything on
+ * the main thread, region-threaded servers run location work on the thread
+ * that owns that location and global work on the global region.
+ */
+public abstract class TaskScheduler {
+
+    public interface Task {
+        void cancel();
+    }
+
+    /**
+     * Work that touches the world at the given location.
+     */
+    public abstract Task runAt(Location location, Runnable task);
+
+    public abstract Task runAtTimer(Location location, Runnable task, long delayTicks, long periodTicks);
+
+    /**
+     * Work that is not tied to a location, such as recipes or plugin wide state.
+     */
+    public abstract Task runGlobal(Runnable task);
+
+    public abstract Task runGlobalTimer(Runnable task, long delayTicks, long periodTicks);
+
+    public abstract Task runAsync(Runnable task);
+
+    public abstract boolean isRegionThreaded();
+
+    public static TaskScheduler create(ItemSmelter plugin) {
+        if (FoliaTaskScheduler.isSupported()) {
+            try {
+                return new FoliaTaskScheduler(plugin);
+            } catch (ReflectiveOperationException e) {
+                plugin.getLogger().warning("Region threading detected but its scheduler could not be loaded: "
+                        + e.getMessage() + ", using the classic scheduler");
+            }
+        }
+        return new BukkitTaskScheduler(plugin);
+    }
+}
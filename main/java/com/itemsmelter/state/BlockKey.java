@@ -0,0 +1,34 @@
+package com.itemsmelter.state;
+
+/**
+ * Packs block coordinates into a single long using the same layout as the
+ * vanilla block position key: 26 bits X, 26 bits Z, 12 bits Y.
+ */
+public final class BlockKey {
+
+    private static final int XZ_BITS = 26;
+    private static final int Y_BITS = 12;
+    private static final long XZ_MASK = (1L << XZ_BITS) - 1;
+    private static final long Y_MASK = (1L << Y_BITS) - 1;
+    private static final int X_SHIFT = XZ_BITS + Y_BITS;
+    private static final int Z_SHIFT = Y_BITS;
+
+    private BlockKey() {
+    }
+
+    public static long pack(int x, int y, int z) {
+        return ((x & XZ_MASK) << X_SHIFT) | ((z & XZ_MASK) << Z_SHIFT) | (y & Y_MASK);
+    }
+
+    public static int unpackX(long key) {
+        return (int) (key >> X_SHIFT);
+    }
+
+    public static int unpackY(long key) {
+        return (int) (key << (64 - Y_BITS) >> (64 - Y_BITS));
+    }
+
+    public static int unpackZ(long key) {
+        return (int) (key << (64 - X_SHIFT) >> (64 - XZ_BITS));
+    }
+}
@@ -0,0 +1,117 @@
+package com.itemsmelter.state;
+
+import com.itemsmelter.managers.SmeltingManager.SmeltingProcess;
+
+/**
+ * Lifecycle of a single furnace as seen by ItemSmelter.
+ * <p>
+ * IDLE -> SMELTING -> FAILING -> BLOCKED -> IDLE. Every timestamp is a world
+ * game tick, so the state never depends on wall-clock time.
+ */
+public final class FurnaceState {
+
+    public enum Phase {
+        IDLE,
+        SMELTING,
+        FAILING,
+        BLOCKED
+    }
+
+    // Repeated smelt events inside this window are treated as duplicates (~200 ms)
+    public static final long DUPLICATE_WINDOW_TICKS = 4L;
+    private static final long NEVER = Long.MIN_VALUE / 2;
+
+    private final int worldIndex;
+    private final long key;
+    // Written by the thread owning the furnace, read by the prune task
+    private volatile Phase phase = Phase.IDLE;
+    private volatile long lastSmeltTick = NEVER;
+    private volatile long blockedUntilTick;
+    private long lastSoundTick = NEVER;
+    private volatile SmeltingProcess process;
+
+    FurnaceState(int worldIndex, long key) {
+        this.worldIndex = worldIndex;
+        this.key = key;
+    }
+
+    public void startSmelting(SmeltingProcess process) {
+        this.process = process;
+        this.phase = Phase.SMELTING;
+    }
+
+    public void completeSmelting(long tick) {
+        this.process = null;
+        this.lastSmeltTick = tick;
+        this.phase = Phase.IDLE;
+    }
+
+    public void cancelSmelting() {
+        this.process = null;
+        if (phase == Phase.SMELTING) {
+            phase = Phase.IDLE;
+        }
+    }
+
+    public void fail(long tick) {
+        this.process = null;
+        this.lastSmeltTick = tick;
+        this.phase = Phase.FAILING;
+    }
+
+    public void block(long untilTick) {
+        this.blockedUntilTick = untilTick;
+        this.phase = Phase.BLOCKED;
+    }
+
+    public void unblock() {
+        if (phase == Phase.FAILING || phase == Phase.BLOCKED) {
+            phase = Phase.IDLE;
+        }
+    }
+
+    public void clearLastSmelt() {
+        this.lastSmeltTick = NEVER;
+    }
+
+    /**
+     * Claims the sound slot for this tick. Returns false if a sound was already
+     * played for this furnace in the same tick.
+     */
+    public boolean claimSound(long tick) {
+        if (lastSoundTick == tick) {
+            return false;
+        }
+        lastSoundTick = tick;
+        return true;
+    }
+
+    public boolean isBlocking(long tick) {
+        return phase == Phase.FAILING || (phase == Phase.BLOCKED && tick < blockedUntilTick);
+    }
+
+    public boolean isDuplicateSmelt(long tick) {
+        return tick - lastSmeltTick < DUPLICATE_WINDOW_TICKS;
+    }
+
+    /**
+     * Whether nothing is left to remember about this furnace at the given tick.
+     */
+    public boolean isReleasable(long tick) {
+        switch (phase) {
+            case IDLE:
+                return process == null && !isDuplicateSmelt(tick);
+            case BLOCKED:
+                return tick >= blockedUntilTick && !isDuplicateSmelt(tick);
+            default:
+                return false;
+        }
+    }
+
+    // Getters
+    public int getWorldIndex() { return worldIndex; }
+    public long getKey() { return key; }
+    public Phase getPhase() { return phase; }
+    public long getLastSmeltTick() { return lastSmeltTick; }
+    public SmeltingProcess getProcess() { return process; }
+}
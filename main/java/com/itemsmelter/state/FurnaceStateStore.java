@@ -0,0 +1,470 @@
+package com.itemsmelter.state;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Per-furnace state, partitioned by world and chunk. Worlds get a small index
+ * on first sight, each world keeps its chunk partitions in primitive
+ * {@link LongObjectTable}s and each partition holds the furnaces of one chunk,
+ * so a lookup never hashes a {@link Location} and only touches a tiny table.
+ * <p>
+ * Unloading a chunk or world detaches its partitions in one step. Partitions
+ * that still hold a running process are parked until the chunk loads again.
+ * <p>
+ * Safe for concurrent use: chunks are striped by 128-block area and every
+ * stripe has its own lock, so region threads working on different parts of
+ * the world rarely meet on the same lock.
+ */
+public class FurnaceStateStore {
+
+    public static final int STRIPES = 32;
+    // Chunks within the same 8x8 chunk area share a stripe
+    private static final int STRIPE_SHIFT = 3;
+    private volatile World[] worlds = new World[0];
+    private volatile Stripe[][] stripes = new Stripe[0][];
+    // Parked partitions are forgotten after an hour of world time by default
+    private volatile long parkedTtlTicks = 72_000L;
+
+    // Where the incremental sweep resumes, only touched by the sweeping thread
+    private int sweepWorld;
+    private int sweepStripe;
+    private boolean sweepParked;
+    private int sweepSlot;
+    private long[] sweepDropped = new long[16];
+
+    /**
+     * Furnaces of a single chunk.
+     */
+    public static final class ChunkPartition {
+        private final int worldIndex;
+        private final long chunkKey;
+        // Most chunks hold a furnace or two, start small and grow on demand
+        private final LongObjectTable<FurnaceState> states = new LongObjectTable<>(2);
+        private long unloadTick;
+
+        private ChunkPartition(int worldIndex, long chunkKey) {
+            this.worldIndex = worldIndex;
+            this.chunkKey = chunkKey;
+        }
+
+        private boolean hasProcess() {
+            boolean[] found = new boolean[1];
+            states.forEach((key, state) -> found[0] |= state.getProcess() != null);
+            return found[0];
+        }
+
+        /**
+         * Visits the furnaces of the partition. Meant for the thread handling
+         * the load or unload of its chunk.
+         */
+        public void forEach(Consumer<FurnaceState> consumer) {
+            states.forEach((key, state) -> consumer.accept(state));
+        }
+
+        // Getters
+        public int getWorldIndex() { return worldIndex; }
+        public long getChunkKey() { return chunkKey; }
+        public long getUnloadTick() { return unloadTick; }
+        public int size() { return states.size(); }
+    }
+
+    private static final class Stripe {
+        private final LongObjectTable<ChunkPartition> live = new LongObjectTable<>();
+        private final LongObjectTable<ChunkPartition> parked = new LongObjectTable<>();
+    }
+
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    private static long chunkKeyOf(long blockKey) {
+        return chunkKey(BlockKey.unpackX(blockKey) >> 4, BlockKey.unpackZ(blockKey) >> 4);
+    }
+
+    private static Stripe stripeOf(Stripe[] stripes, long chunkKey) {
+        int h = ((int) (chunkKey >> 32) >> STRIPE_SHIFT) * 0x9E3779B1 + ((int) chunkKey >> STRIPE_SHIFT);
+        h ^= h >>> 16;
+        return stripes[h & (STRIPES - 1)];
+    }
+
+    private int indexOf(World[] worlds, World world) {
+        // A server has a handful of worlds, an identity scan beats hashing here
+        for (int i = 0; i < worlds.length; i++) {
+            if (worlds[i] == world) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Stripes of the world at the index, or null if the world unloaded after
+     * its index was looked up.
+     */
+    private Stripe[] stripesAt(int index) {
+        Stripe[][] stripes = this.stripes;
+        return index < stripes.length ? stripes[index] : null;
+    }
+
+    private synchronized int register(World world) {
+        int index = indexOf(worlds, world);
+        if (index >= 0) {
+            return index;
+        }
+
+        Stripe[] worldStripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            worldStripes[i] = new Stripe();
+        }
+
+        // Reuse the slot of an unloaded world, otherwise grow. Copy on write so
+        // readers never see a half registered world
+        index = indexOf(worlds, null);
+        if (index < 0) {
+            index = worlds.length;
+        }
+        Stripe[][] grownStripes = Arrays.copyOf(stripes, Math.max(stripes.length, index + 1));
+        grownStripes[index] = worldStripes;
+        stripes = grownStripes;
+        World[] grownWorlds = Arrays.copyOf(worlds, Math.max(worlds.length, index + 1));
+        grownWorlds[index] = world;
+        worlds = grownWorlds;
+        return index;
+    }
+
+    public void setParkedTtlTicks(long parkedTtlTicks) {
+        this.parkedTtlTicks = parkedTtlTicks;
+    }
+
+    public World getWorld(int worldIndex) {
+        World[] worlds = this.worlds;
+        return worldIndex < worlds.length ? worlds[worldIndex] : null;
+    }
+
+    public FurnaceState get(World world, int x, int y, int z) {
+        int index = indexOf(worlds, world);
+        Stripe[] worldStripes = index >= 0 ? stripesAt(index) : null;
+        if (worldStripes == null) {
+            return null;
+        }
+        long key = BlockKey.pack(x, y, z);
+        long chunkKey = chunkKey(x >> 4, z >> 4);
+        Stripe stripe = stripeOf(worldStripes, chunkKey);
+        synchronized (stripe) {
+            ChunkPartition partition = stripe.live.get(chunkKey);
+            return partition != null ? partition.states.get(key) : null;
+        }
+    }
+
+    public FurnaceState get(Block block) {
+        return get(block.getWorld(), block.getX(), block.getY(), block.getZ());
+    }
+
+    public FurnaceState get(Location location) {
+        return get(location.getWorld(), location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    public FurnaceState getOrCreate(World world, int x, int y, int z) {
+        int index = indexOf(worlds, world);
+        Stripe[] worldStripes = index >= 0 ? stripesAt(index) : null;
+        if (worldStripes == null) {
+            index = register(world);
+            worldStripes = stripesAt(index);
+        }
+        long key = BlockKey.pack(x, y, z);
+        long chunkKey = chunkKey(x >> 4, z >> 4);
+        Stripe stripe = stripeOf(worldStripes, chunkKey);
+
+        synchronized (stripe) {
+            ChunkPartition partition = stripe.live.get(chunkKey);
+            if (partition == null) {
+                partition = new ChunkPartition(index, chunkKey);
+                stripe.live.put(chunkKey, partition);
+            }
+
+            FurnaceState state = partition.states.get(key);
+            if (state == null) {
+                state = new FurnaceState(index, key);
+                partition.states.put(key, state);
+            }
+            return state;
+        }
+    }
+
+    public FurnaceState getOrCreate(Block block) {
+        return getOrCreate(block.getWorld(), block.getX(), block.getY(), block.getZ());
+    }
+
+    public FurnaceState getOrCreate(Location location) {
+        return getOrCreate(location.getWorld(), location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    /**
+     * Drops the state if nothing is tracked for the furnace anymore.
+     */
+    public void releaseIfIdle(FurnaceState state, long tick) {
+        if (state != null) {
+            remove(state, current -> current.isReleasable(tick));
+        }
+    }
+
+    public void remove(FurnaceState state) {
+        remove(state, current -> true);
+    }
+
+    /**
+     * Removes the state if it is still the one tracked for its furnace and
+     * still passes the condition, both checked under the stripe lock. Returns
+     * whether it was removed.
+     */
+    public boolean remove(FurnaceState state, Predicate<FurnaceState> condition) {
+        Stripe[] worldStripes = stripesAt(state.getWorldIndex());
+        if (worldStripes == null) {
+            return false;
+        }
+
+        long chunkKey = chunkKeyOf(state.getKey());
+        Stripe stripe = stripeOf(worldStripes, chunkKey);
+        synchronized (stripe) {
+            ChunkPartition partition = stripe.live.get(chunkKey);
+            // A delayed task may still hold a state that was already replaced
+            if (partition == null || partition.states.get(state.getKey()) != state || !condition.test(state)) {
+                return false;
+            }
+            partition.states.remove(state.getKey());
+            if (partition.states.isEmpty()) {
+                stripe.live.remove(chunkKey);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Detaches the partition of an unloading chunk. It is parked if one of its
+     * furnaces still has a process, otherwise dropped. Returns the detached
+     * partition, or null if the chunk had no furnace state.
+     */
+    public ChunkPartition unloadChunk(World world, int chunkX, int chunkZ) {
+        int index = indexOf(worlds, world);
+        Stripe[] worldStripes = index >= 0 ? stripesAt(index) : null;
+        if (worldStripes == null) {
+            return null;
+        }
+
+        long chunkKey = chunkKey(chunkX, chunkZ);
+        Stripe stripe = stripeOf(worldStripes, chunkKey);
+        synchronized (stripe) {
+            ChunkPartition partition = stripe.live.remove(chunkKey);
+            if (partition != null && partition.hasProcess()) {
+                partition.unloadTick = world.getGameTime();
+                stripe.parked.put(chunkKey, partition);
+            }
+            return partition;
+        }
+    }
+
+    /**
+     * Brings a parked partition back when its chunk loads. Returns the restored
+     * partition, or null if nothing was parked for the chunk.
+     */
+    public ChunkPartition loadChunk(World world, int chunkX, int chunkZ) {
+        int index = indexOf(worlds, world);
+        Stripe[] worldStripes = index >= 0 ? stripesAt(index) : null;
+        if (worldStripes == null) {
+            return null;
+        }
+
+        long chunkKey = chunkKey(chunkX, chunkZ);
+        Stripe stripe = stripeOf(worldStripes, chunkKey);
+        synchronized (stripe) {
+            ChunkPartition partition = stripe.parked.remove(chunkKey);
+            // State created while the chunk was away wins over the parked copy
+            if (partition != null && stripe.live.get(chunkKey) == null) {
+                stripe.live.put(chunkKey, partition);
+                return partition;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Forgets everything tracked for a world, live and parked.
+     */
+    public synchronized void unloadWorld(World world) {
+        int index = indexOf(worlds, world);
+        if (index < 0) {
+            return;
+        }
+
+        // Stripes go first, a reader still holding the old index finds none
+        Stripe[][] shrunkStripes = stripes.clone();
+        shrunkStripes[index] = null;
+        stripes = shrunkStripes;
+        World[] shrunkWorlds = worlds.clone();
+        shrunkWorlds[index] = null;
+        worlds = shrunkWorlds;
+    }
+
+    /**
+     * Visits the furnaces of loaded chunks. Parked partitions are skipped, their
+     * processes have no scheduled work and are kept for the catch-up on load.
+     */
+    public void forEachLive(Consumer<FurnaceState> consumer) {
+        for (Stripe[] worldStripes : stripes) {
+            if (worldStripes == null) {
+                continue;
+            }
+            for (Stripe stripe : worldStripes) {
+                synchronized (stripe) {
+                    stripe.live.forEach((chunkKey, partition) ->
+                            partition.states.forEach((key, state) -> consumer.accept(state)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes every state that has settled back to idle, using each world's
+     * own game time, along with empty and expired parked partitions. Returns
+     * the number of released furnaces.
+     */
+    public int removeIdle() {
+        World[] worlds = this.worlds;
+        Stripe[][] stripes = this.stripes;
+        long ttl = parkedTtlTicks;
+        int removed = 0;
+        for (int i = 0; i < worlds.length; i++) {
+            // The world may unload between the two reads
+            if (worlds[i] == null || stripes[i] == null) {
+                continue;
+            }
+            long tick = worlds[i].getGameTime();
+            for (Stripe stripe : stripes[i]) {
+                synchronized (stripe) {
+                    int[] released = new int[1];
+                    stripe.live.removeIf((chunkKey, partition) -> {
+                        released[0] += partition.states.removeIf((key, state) -> state.isReleasable(tick));
+                        return partition.states.isEmpty();
+                    });
+                    stripe.parked.removeIf((chunkKey, partition) -> tick - partition.unloadTick > ttl);
+                    removed += released[0];
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Continues the incremental sweep where the previous call stopped, looking
+     * at no more than {@code budget} table slots and furnaces. Settled states,
+     * emptied partitions and expired parked partitions are dropped, the
+     * remaining live states are added to {@code live} chunk by chunk for the
+     * caller to check outside the lock. A partition is always taken whole, so
+     * the budget may be exceeded by one chunk. Must always be called from the
+     * same thread. Returns the number of released furnaces.
+     */
+    public int sweep(int budget, List<FurnaceState> live) {
+        World[] worlds = this.worlds;
+        Stripe[][] stripes = this.stripes;
+        long ttl = parkedTtlTicks;
+        int removed = 0;
+        while (budget > 0 && worlds.length > 0) {
+            if (sweepWorld >= worlds.length) {
+                sweepWorld = 0;
+            }
+            World world = worlds[sweepWorld];
+            Stripe[] worldStripes = sweepWorld < stripes.length ? stripes[sweepWorld] : null;
+            if (world == null || worldStripes == null) {
+                sweepWorld++;
+                sweepStripe = 0;
+                sweepParked = false;
+                sweepSlot = 0;
+                budget--;
+                continue;
+            }
+
+            long tick = world.getGameTime();
+            Stripe stripe = worldStripes[sweepStripe];
+            synchronized (stripe) {
+                LongObjectTable<ChunkPartition> table = sweepParked ? stripe.parked : stripe.live;
+                int end = table.capacity();
+                int slot = sweepSlot;
+                int dropped = 0;
+                while (slot < end && budget > 0) {
+                    ChunkPartition partition = table.valueAt(slot++);
+                    budget--;
+                    if (partition == null) {
+                        continue;
+                    }
+
+                    if (sweepParked) {
+                        if (tick - partition.unloadTick <= ttl) {
+                            continue;
+                        }
+                    } else {
+                        removed += partition.states.removeIf((key, state) -> state.isReleasable(tick));
+                        budget -= partition.states.size();
+                        partition.states.forEach((key, state) -> live.add(state));
+                        if (!partition.states.isEmpty()) {
+                            continue;
+                        }
+                    }
+                    if (dropped == sweepDropped.length) {
+                        sweepDropped = Arrays.copyOf(sweepDropped, dropped << 1);
+                    }
+                    sweepDropped[dropped++] = partition.chunkKey;
+                }
+
+                // Removing shifts entries back, one may have to wait for the
+                // next lap, which is fine for a sweep
+                for (int i = 0; i < dropped; i++) {
+                    table.remove(sweepDropped[i]);
+                }
+
+                if (slot < end) {
+                    sweepSlot = slot;
+                } else {
+                    advanceSweep();
+                }
+            }
+        }
+        return removed;
+    }
+
+    private void advanceSweep() {
+        sweepSlot = 0;
+        if (!sweepParked) {
+            sweepParked = true;
+            return;
+        }
+        sweepParked = false;
+        if (++sweepStripe == STRIPES) {
+            sweepStripe = 0;
+            sweepWorld++;
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe[] worldStripes : stripes) {
+            if (worldStripes == null) {
+                continue;
+            }
+            for (Stripe stripe : worldStripes) {
+                synchronized (stripe) {
+                    int[] count = new int[1];
+                    stripe.live.forEach((chunkKey, partition) -> count[0] += partition.states.size());
+                    size += count[0];
+                }
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,213 @@
+package com.itemsmelter.state;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table from primitive long keys to object values.
+ * Uses linear probing with backward-shift deletion, so there are no
+ * tombstones and no boxing on lookup. A slot is free when its value is null,
+ * which means null values cannot be stored.
+ */
+public class LongObjectTable<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MIN_CAPACITY = 4;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int shift;
+    private int size;
+    private int resizeAt;
+
+    public LongObjectTable() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    public LongObjectTable(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        resizeAt = capacity * 3 / 4;
+    }
+
+    private int slot(long key) {
+        // Fibonacci hashing spreads the packed coordinate bits over the whole table
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int i = slot(key);
+        Object value;
+        while ((value = values[i]) != null) {
+            if (keys[i] == key) {
+                return (V) value;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+
+        int i = slot(key);
+        Object existing;
+        while ((existing = values[i]) != null) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return (V) existing;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeAt) {
+            rehash(values.length << 1);
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int i = slot(key);
+        Object value;
+        while ((value = values[i]) != null) {
+            if (keys[i] == key) {
+                removeAt(i);
+                return (V) value;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    private void removeAt(int hole) {
+        size--;
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (values[i] == null) {
+                break;
+            }
+            int home = slot(keys[i]);
+            // Shift back any entry whose probe sequence passes through the hole
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        values[hole] = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> consumer) {
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value != null) {
+                consumer.accept(keys[i], (V) value);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public int removeIf(EntryPredicate<? super V> predicate) {
+        // Scan from a free slot so no cluster wraps around the start. Backward
+        // shifts then only move entries the scan has not reached yet, and every
+        // entry is tested exactly once. The load factor keeps a slot free.
+        int start = 0;
+        while (values[start] != null) {
+            start++;
+        }
+
+        int removed = 0;
+        int i = (start + 1) & mask;
+        int remaining = mask;
+        while (remaining > 0) {
+            Object value = values[i];
+            if (value != null && predicate.test(keys[i], (V) value)) {
+                removeAt(i);
+                removed++;
+                // A later entry may have been shifted into this slot, so look at it again
+                continue;
+            }
+            i = (i + 1) & mask;
+            remaining--;
+        }
+        return removed;
+    }
+
+    /**
+     * Number of slots, for walking the table by slot with {@link #valueAt}.
+     */
+    public int capacity() {
+        return values.length;
+    }
+
+    /**
+     * Value stored in the slot, or null if the slot is free.
+     */
+    @SuppressWarnings("unchecked")
+    public V valueAt(int slot) {
+        return (V) values[slot];
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            Object value = oldValues[i];
+            if (value != null) {
+                int slot = slot(oldKeys[i]);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = value;
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    @FunctionalInterface
+    public interface EntryPredicate<V> {
+        boolean test(long key, V value);
+    }
+}
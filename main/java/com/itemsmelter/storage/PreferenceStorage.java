@@ -0,0 +1,46 @@
+package com.itemsmelter.storage;
+
+import com.itemsmelter.ItemSmelter;
+import com.itemsmelter.models.PlayerPreferences;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Where player preferences live between sessions. Players are loaded one at a
+ * time when they log in, so nothing here ever reads every stored player.
+ * Every method blocks on I/O and must be called off the main thread.
+ */
+public abstract class PreferenceStorage {
+
+    /**
+     * Returns the stored preferences, or null if the player never changed any.
+     */
+    public abstract PlayerPreferences load(UUID playerId) throws IOException;
+
+    /**
+     * Stores a batch of preferences, replacing what was stored for each player.
+     */
+    public abstract void save(Map<UUID, PlayerPreferences> preferences) throws IOException;
+
+    public abstract String getName();
+
+    public void close() {
+    }
+
+    public static PreferenceStorage create(ItemSmelter plugin) {
+        String type = plugin.getConfigManager().getSnapshot().getString("storage.type", "YAML");
+        if (type.equalsIgnoreCase("SQLITE")) {
+            try {
+                return new SqlPreferenceStorage(new File(plugin.getDataFolder(), "preferences.db"));
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not open preferences.db, using YAML storage: " + e.getMessage());
+            }
+        } else if (!type.equalsIgnoreCase("YAML")) {
+            plugin.getLogger().warning("Invalid storage type: " + type + ", using YAML");
+        }
+        return new YamlPreferenceStorage(new File(plugin.getDataFolder(), "playerdata"));
+    }
+}
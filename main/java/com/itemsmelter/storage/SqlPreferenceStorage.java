@@ -0,0 +1,103 @@
+package com.itemsmelter.storage;
+
+import com.itemsmelter.models.PlayerPreferences;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Preferences in an embedded SQLite file, for servers with more stored players
+ * than a folder of YAML files handles well. The driver ships with Spigot and
+ * Paper. One connection, used by one thread at a time.
+ */
+public class SqlPreferenceStorage extends PreferenceStorage {
+
+    private final Connection connection;
+
+    SqlPreferenceStorage(File file) throws IOException {
+        try {
+            // Older servers do not register the driver on their own
+            Class.forName("org.sqlite.JDBC");
+            connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE IF NOT EXISTS player_preferences ("
+                        + "uuid CHAR(36) PRIMARY KEY, sounds_enabled INTEGER NOT NULL, locale VARCHAR(64))");
+            }
+        } catch (ClassNotFoundException | SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized PlayerPreferences load(UUID playerId) throws IOException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT sounds_enabled, locale FROM player_preferences WHERE uuid = ?")) {
+            statement.setString(1, playerId.toString());
+            try (ResultSet result = statement.executeQuery()) {
+                if (!result.next()) {
+                    return null;
+                }
+                return new PlayerPreferences(result.getInt(1) != 0, result.getString(2));
+            }
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void save(Map<UUID, PlayerPreferences> preferences) throws IOException {
+        // One transaction per batch, SQLite syncs the file once per commit
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT OR REPLACE INTO player_preferences (uuid, sounds_enabled, locale) VALUES (?, ?, ?)")) {
+            connection.setAutoCommit(false);
+            for (Map.Entry<UUID, PlayerPreferences> entry : preferences.entrySet()) {
+                statement.setString(1, entry.getKey().toString());
+                statement.setInt(2, entry.getValue().isSoundsEnabled() ? 1 : 0);
+                if (entry.getValue().getLocale() != null) {
+                    statement.setString(3, entry.getValue().getLocale());
+                } else {
+                    statement.setNull(3, Types.VARCHAR);
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException ignored) {
+                // The original failure is the one worth reporting
+            }
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException ignored) {
+                // Next save sets it again
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "SQLite";
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // Nothing left to lose, every batch was committed
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.itemsmelter.storage;
+
+import com.itemsmelter.managers.WriteBehind;
+import com.itemsmelter.models.PlayerPreferences;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * One small YAML file per player, spread over 256 folders by the first two
+ * characters of the UUID so no folder grows huge.
+ */
+public class YamlPreferenceStorage extends PreferenceStorage {
+
+    private final File folder;
+
+    YamlPreferenceStorage(File folder) {
+        this.folder = folder;
+    }
+
+    private File fileOf(UUID playerId) {
+        String id = playerId.toString();
+        return new File(new File(folder, id.substring(0, 2)), id + ".yml");
+    }
+
+    @Override
+    public synchronized PlayerPreferences load(UUID playerId) {
+        File file = fileOf(playerId);
+        if (!file.exists()) {
+            return null;
+        }
+
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+        return new PlayerPreferences(config.getBoolean("sounds_enabled", true), config.getString("locale"));
+    }
+
+    @Override
+    public synchronized void save(Map<UUID, PlayerPreferences> preferences) throws IOException {
+        for (Map.Entry<UUID, PlayerPreferences> entry : preferences.entrySet()) {
+            File file = fileOf(entry.getKey());
+            File parent = file.getParentFile();
+            if (!parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Could not create " + parent.getPath());
+            }
+
+            YamlConfiguration config = new YamlConfiguration();
+            config.set("sounds_enabled", entry.getValue().isSoundsEnabled());
+            config.set("locale", entry.getValue().getLocale());
+            WriteBehind.writeAtomically(file, config.saveToString());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "YAML";
+    }
+}
@@ -0,0 +1,30 @@
+package com.itemsmelter.managers;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ProcessPersistenceTest {
+
+    @Test
+    void fingerprintMatchesForIndependentStacks() {
+        int first = ProcessPersistence.fingerprint(new String("IRON_SWORD"), 17, true);
+        int second = ProcessPersistence.fingerprint(new StringBuilder("IRON_").append("SWORD").toString(), 17, true);
+        assertEquals(first, second);
+    }
+
+    @Test
+    void fingerprintIsStableAcrossRestarts() {
+        // Stored on furnaces, so the value must not depend on anything picked per JVM
+        assertEquals(-1097390026, ProcessPersistence.fingerprint("IRON_SWORD", 17, true));
+    }
+
+    @Test
+    void fingerprintChangesWithItem() {
+        int fingerprint = ProcessPersistence.fingerprint("IRON_SWORD", 17, true);
+        assertNotEquals(fingerprint, ProcessPersistence.fingerprint("GOLDEN_SWORD", 17, true));
+        assertNotEquals(fingerprint, ProcessPersistence.fingerprint("IRON_SWORD", 18, true));
+        assertNotEquals(fingerprint, ProcessPersistence.fingerprint("IRON_SWORD", 17, false));
+    }
+}
@@ -0,0 +1,110 @@
+package com.itemsmelter.models;
+
+import org.bukkit.Location;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DurabilityRangeTest {
+
+    private static final int SAMPLES = 200_000;
+
+    // Chi-square critical values at p = 0.001, indexed by degrees of freedom
+    private static final double[] CRITICAL = {
+            0.0, 10.828, 13.816, 16.266, 18.467, 20.515, 22.458, 24.322, 26.124, 27.877
+    };
+
+    @Test
+    void fixedRangeAlwaysReturnsItsValue() {
+        DurabilityRange range = new DurabilityRange(5, 5);
+        SplittableRandom random = new SplittableRandom(1L);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(5, range.getRandom(random));
+        }
+    }
+
+    @Test
+    void rollsAreUniformOverTheRange() {
+        SplittableRandom random = new SplittableRandom(0x5eedL);
+        for (DurabilityRange range : ranges()) {
+            long[] counts = new long[range.getMax() - range.getMin() + 1];
+            for (int i = 0; i < SAMPLES; i++) {
+                counts[bucket(range, range.getRandom(random))]++;
+            }
+            assertUniform(range, counts);
+        }
+    }
+
+    @Test
+    void deterministicRollsAreUniformAcrossNeighbouringFurnaces() {
+        // One fresh generator per roll, seeded from position and tick, so
+        // neighbouring furnaces and consecutive ticks must not correlate
+        RollSource.Deterministic source = new RollSource.Deterministic(42L);
+        for (DurabilityRange range : ranges()) {
+            long[] counts = new long[range.getMax() - range.getMin() + 1];
+            int n = 0;
+            for (int x = 0; x < 50 && n < SAMPLES; x++) {
+                for (int z = 0; z < 50 && n < SAMPLES; z++) {
+                    Location location = new Location(null, x, 64, z);
+                    for (long tick = 0; tick < 80 && n < SAMPLES; tick++, n++) {
+                        RandomGenerator random = source.forRoll(location, tick);
+                        counts[bucket(range, range.getRandom(random))]++;
+                    }
+                }
+            }
+            assertUniform(range, counts);
+        }
+    }
+
+    @Test
+    void deterministicRollsAreUniformAcrossSeeds() {
+        Location location = new Location(null, 10, 64, -3);
+        for (DurabilityRange range : ranges()) {
+            long[] counts = new long[range.getMax() - range.getMin() + 1];
+            for (int seed = 0; seed < SAMPLES; seed++) {
+                RandomGenerator random = new RollSource.Deterministic(seed).forRoll(location, 1000L);
+                counts[bucket(range, range.getRandom(random))]++;
+            }
+            assertUniform(range, counts);
+        }
+    }
+
+    private static DurabilityRange[] ranges() {
+        // Shapes used by the default config, plus a wider one
+        return new DurabilityRange[] {
+                new DurabilityRange(3, 4),
+                new DurabilityRange(0, 2),
+                new DurabilityRange(5, 7),
+                new DurabilityRange(0, 3),
+                new DurabilityRange(0, 9)
+        };
+    }
+
+    private static int bucket(DurabilityRange range, int value) {
+        assertTrue(value >= range.getMin() && value <= range.getMax(),
+                value + " outside " + range.getMin() + ".." + range.getMax());
+        return value - range.getMin();
+    }
+
+    private static void assertUniform(DurabilityRange range, long[] counts) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+
+        double expected = (double) total / counts.length;
+        double chiSquare = 0.0;
+        for (long count : counts) {
+            double diff = count - expected;
+            chiSquare += diff * diff / expected;
+        }
+
+        double critical = CRITICAL[counts.length - 1];
+        assertTrue(chiSquare < critical, "chi-square " + chiSquare + " >= " + critical
+                + " for " + range.getMin() + ".." + range.getMax());
+    }
+}
@@ -0,0 +1,104 @@
+package com.itemsmelter.models;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class SmeltableItemTest {
+
+    @Test
+    void lookupTableMatchesThresholdScanForDefaultItems() throws Exception {
+        List<SmeltableItem> items = loadDefaultItems();
+        assertFalse(items.isEmpty());
+
+        for (SmeltableItem item : items) {
+            // Past max durability too, the table is clamped there
+            for (int durability = -1; durability <= item.getMaxDurability() * 2 + 1; durability++) {
+                DurabilityRange expected = scanRange(item, durability);
+                DurabilityRange actual = item.getRange(durability);
+                String where = item.getId() + " at durability " + durability;
+                assertEquals(expected.getMin(), actual.getMin(), where);
+                assertEquals(expected.getMax(), actual.getMax(), where);
+            }
+        }
+    }
+
+    /**
+     * The range lookup as it was before the table, scanning the thresholds on
+     * every call.
+     */
+    private static DurabilityRange scanRange(SmeltableItem item, int currentDurability) {
+        Map<Integer, DurabilityRange> ranges = item.getDurabilityRanges();
+        if (!item.isDurabilityBased()) {
+            DurabilityRange range = ranges.get(100);
+            return range != null ? range : new DurabilityRange(1, 1);
+        }
+
+        double durabilityPercent = ((double) currentDurability / item.getMaxDurability()) * 100.0;
+        int applicableThreshold = 0;
+        for (int threshold : ranges.keySet()) {
+            if (durabilityPercent >= threshold && threshold > applicableThreshold) {
+                applicableThreshold = threshold;
+            }
+        }
+
+        DurabilityRange range = ranges.get(applicableThreshold);
+        return range != null ? range : new DurabilityRange(0, 0);
+    }
+
+    private static List<SmeltableItem> loadDefaultItems() throws Exception {
+        YamlConfiguration config;
+        try (InputStream in = SmeltableItemTest.class.getResourceAsStream("/config.yml")) {
+            assertNotNull(in, "config.yml is not on the test classpath");
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                config = YamlConfiguration.loadConfiguration(reader);
+            }
+        }
+
+        ConfigurationSection section = config.getConfigurationSection("default_items");
+        assertNotNull(section);
+
+        List<SmeltableItem> items = new ArrayList<>();
+        for (String id : section.getKeys(false)) {
+            ConfigurationSection itemSection = section.getConfigurationSection(id);
+            Map<Integer, DurabilityRange> ranges = new HashMap<>();
+            ConfigurationSection rangesSection = itemSection.getConfigurationSection("durability_ranges");
+            if (rangesSection != null) {
+                for (String threshold : rangesSection.getKeys(false)) {
+                    ConfigurationSection rangeSection = rangesSection.getConfigurationSection(threshold);
+                    ranges.put(Integer.parseInt(threshold),
+                            new DurabilityRange(rangeSection.getInt("min", 0), rangeSection.getInt("max", 1)));
+                }
+            }
+
+            items.add(new SmeltableItem(
+                    id,
+                    Material.matchMaterial(itemSection.getString("material")),
+                    itemSection.getBoolean("enabled", true),
+                    FurnaceKind.BLAST_FURNACE,
+                    itemSection.getBoolean("ignore_sticks", true),
+                    itemSection.getBoolean("durability_based", true),
+                    Material.matchMaterial(itemSection.getString("output.material")),
+                    itemSection.getInt("max_durability"),
+                    itemSection.getDouble("smelt_time_multiplier", 2.0),
+                    1,
+                    ranges
+            ));
+        }
+        return items;
+    }
+}
@@ -0,0 +1,120 @@
+package com.itemsmelter.state;
+
+import com.itemsmelter.managers.SmeltingManager.SmeltingProcess;
+import org.bukkit.World;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FurnaceStateStoreSoakTest {
+
+    private static final int REGION = 64;
+    private static final int CHUNKS_PER_PASS = REGION * REGION;
+    private static final int PASSES = 500;
+    private static final long TICKS_PER_PASS = 100L;
+    private static final long PARKED_TTL_TICKS = 1000L;
+    private static final long MAX_HEAP_GROWTH = 8L * 1024 * 1024;
+
+    private long tick;
+
+    @Test
+    void stateStaysFlatOverMillionsOfChunkCycles() {
+        World world = fakeWorld();
+        FurnaceStateStore store = new FurnaceStateStore();
+        store.setParkedTtlTicks(PARKED_TTL_TICKS);
+
+        // Warm up past the parked TTL so the baseline already holds the
+        // steady number of parked partitions
+        int warmup = (int) (PARKED_TTL_TICKS / TICKS_PER_PASS) * 2;
+        for (int pass = 0; pass < warmup; pass++) {
+            runPass(store, world, pass);
+        }
+        long baseline = usedHeap();
+
+        for (int pass = warmup; pass < PASSES; pass++) {
+            runPass(store, world, pass);
+            assertEquals(0, store.size(), "live furnaces after pass " + pass);
+        }
+
+        long growth = usedHeap() - baseline;
+        assertTrue(growth < MAX_HEAP_GROWTH, "heap grew by " + growth + " bytes over "
+                + (long) PASSES * CHUNKS_PER_PASS + " chunk cycles");
+
+        store.unloadWorld(world);
+        assertEquals(0, store.size());
+    }
+
+    /**
+     * Loads, uses and unloads every chunk of a region that drifts a little each
+     * pass. Every eighth chunk unloads mid smelt and is parked. Half of those
+     * come back in the next pass and finish, the rest are left behind and
+     * must expire.
+     */
+    private void runPass(FurnaceStateStore store, World world, int pass) {
+        int originX = pass * (REGION / 2);
+        for (int i = 0; i < CHUNKS_PER_PASS; i++) {
+            int chunkX = originX + i % REGION;
+            int chunkZ = i / REGION;
+
+            FurnaceStateStore.ChunkPartition restored = store.loadChunk(world, chunkX, chunkZ);
+            if (restored != null) {
+                restored.forEach(state -> state.completeSmelting(tick));
+            }
+
+            int x = chunkX << 4;
+            int z = chunkZ << 4;
+            FurnaceState furnace = store.getOrCreate(world, x + 3, 64, z + 5);
+            furnace.block(tick + 40);
+            FurnaceState smelting = store.getOrCreate(world, x + 9, 12, z + 1);
+            if (i % 8 == 0) {
+                smelting.startSmelting(process());
+            }
+
+            assertNotNull(store.unloadChunk(world, chunkX, chunkZ));
+        }
+
+        tick += TICKS_PER_PASS;
+        store.removeIdle();
+    }
+
+    private static SmeltingProcess process() {
+        return new SmeltingProcess(null, null, null, 1, null, 200, null, 0L, 0, 0);
+    }
+
+    private World fakeWorld() {
+        UUID uid = new UUID(1L, 2L);
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[] {World.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getGameTime":
+                            return tick;
+                        case "getUID":
+                            return uid;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}